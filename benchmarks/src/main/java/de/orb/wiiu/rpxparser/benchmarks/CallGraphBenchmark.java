@@ -0,0 +1,63 @@
+package de.orb.wiiu.rpxparser.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.orb.wiiu.rpxparser.ElfReader;
+import de.orb.wiiu.rpxparser.FunctionCallGraph;
+import de.orb.wiiu.rpxparser.FunctionCallGraphBuilder;
+import de.orb.wiiu.rpxparser.RPXFile;
+
+/**
+ * Measures building the call graph of files where every function calls an
+ * import and an earlier function. <code>build</code> reuses an opened file whose
+ * sections are already inflated, <code>openAndBuild</code> includes opening it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CallGraphBenchmark {
+
+    @Param({ "10000", "100000" })
+    int functions;
+
+    @Param({ "256" })
+    int imports;
+
+    byte[] data;
+    ElfReader reader;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        data = SyntheticRpx.create(functions, imports, false, true);
+        reader = new ElfReader(ByteBuffer.wrap(data));
+        new FunctionCallGraphBuilder(reader).build();
+    }
+
+    @Benchmark
+    public FunctionCallGraph build() {
+        return new FunctionCallGraphBuilder(reader).build();
+    }
+
+    @Benchmark
+    public FunctionCallGraph openAndBuild() throws IOException {
+        return new RPXFile(data).getCallGraph();
+    }
+}
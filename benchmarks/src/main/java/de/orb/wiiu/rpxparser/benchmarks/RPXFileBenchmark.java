@@ -0,0 +1,116 @@
+package de.orb.wiiu.rpxparser.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.orb.wiiu.rpxparser.ElfSymbol;
+import de.orb.wiiu.rpxparser.RPXFile;
+
+/**
+ * Measures the common operations on a freshly opened file. Every benchmark
+ * opens the file itself, so section inflation and name decoding are part of the
+ * measured cost. Run with <code>-prof gc</code> to see allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RPXFileBenchmark {
+
+    @Param({ "10000", "100000" })
+    int functions;
+
+    @Param({ "256" })
+    int imports;
+
+    @Param({ "true", "false" })
+    boolean compressed;
+
+    byte[] data;
+    File file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        data = SyntheticRpx.create(functions, imports, compressed);
+        file = File.createTempFile("rpxparser-benchmark", ".rpx");
+        file.deleteOnExit();
+        Files.write(file.toPath(), data);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public RPXFile open() throws IOException {
+        return new RPXFile(data);
+    }
+
+    @Benchmark
+    public RPXFile openFile() throws IOException {
+        return new RPXFile(file);
+    }
+
+    @Benchmark
+    public RPXFile openMapped() throws IOException {
+        return RPXFile.map(file);
+    }
+
+    @Benchmark
+    public void symbols(Blackhole bh) throws IOException {
+        Iterator<ElfSymbol> it = new RPXFile(data).getSymbols().iterator();
+        while (it.hasNext()) {
+            bh.consume(it.next());
+        }
+    }
+
+    @Benchmark
+    public List<ElfSymbol> functionSymbolsText() throws IOException {
+        return new RPXFile(data).getFunctionSymbolsText();
+    }
+
+    @Benchmark
+    public Object imports() throws IOException {
+        return new RPXFile(data).getImports();
+    }
+
+    @Benchmark
+    public Object exports() throws IOException {
+        return new RPXFile(data).getExports();
+    }
+
+    @Benchmark
+    public void functionData(Blackhole bh) throws IOException {
+        RPXFile rpx = new RPXFile(data);
+        for (ElfSymbol symbol : rpx.getFunctionSymbolsText()) {
+            bh.consume(rpx.getFunctionData(symbol));
+        }
+    }
+
+    @Benchmark
+    public Object functionDataText() throws IOException {
+        return new RPXFile(data).getFunctionDataText();
+    }
+}
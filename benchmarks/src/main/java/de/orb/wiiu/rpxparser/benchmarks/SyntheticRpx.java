@@ -0,0 +1,79 @@
+package de.orb.wiiu.rpxparser.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import de.orb.wiiu.rpxparser.ElfRelocation;
+import de.orb.wiiu.rpxparser.ElfSection;
+import de.orb.wiiu.rpxparser.ElfSymbol;
+import de.orb.wiiu.rpxparser.RPXWriter;
+
+/**
+ * Creates RPX files with a configurable number of functions, imports and
+ * relocations for the benchmarks.
+ */
+final class SyntheticRpx {
+    static final long TEXT_ADDRESS = 0x02000000L;
+    static final long DATA_ADDRESS = 0x10000000L;
+    static final long IMPORT_ADDRESS = 0xC0000000L;
+
+    private SyntheticRpx() {
+    }
+
+    static byte[] create(int functions, int imports, boolean compressed) throws IOException {
+        return create(functions, imports, compressed, false);
+    }
+
+    /**
+     * @param localCalls if true, every function after the first also calls a
+     *            random earlier function with a plain <code>bl</code>.
+     */
+    static byte[] create(int functions, int imports, boolean compressed, boolean localCalls) throws IOException {
+        Random random = new Random(functions);
+        RPXWriter writer = new RPXWriter().setCompressed(compressed).setEntry(TEXT_ADDRESS);
+
+        int[] words = new int[functions];
+        int textSize = 0;
+        for (int f = 0; f < functions; f++) {
+            words[f] = 4 + random.nextInt(28);
+            textSize += words[f] * 4;
+        }
+        ByteBuffer text = ByteBuffer.allocate(textSize);
+        int textSection = writer.addSection(".text", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_EXECINSTR, TEXT_ADDRESS,
+                text.array());
+        int dataSection = writer.addSection(".data", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_WRITE, DATA_ADDRESS,
+                new byte[functions * 4]);
+        int importSection = writer.addImportSection("coreinit", false, IMPORT_ADDRESS);
+        int firstImport = -1;
+        for (int i = 0; i < imports; i++) {
+            int symbol = writer.addImportSymbol(importSection, "IMPORT_" + i);
+            firstImport = firstImport < 0 ? symbol : firstImport;
+        }
+        int dataSymbol = writer.addSymbol("data", DATA_ADDRESS, functions * 4, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_OBJECT, dataSection);
+
+        long[] addresses = new long[functions];
+        for (int f = 0; f < functions; f++) {
+            long address = TEXT_ADDRESS + text.position();
+            addresses[f] = address;
+            for (int w = 0; w < words[f] - 3; w++) {
+                if (localCalls && f > 0 && w == 0) {
+                    long target = addresses[random.nextInt(f)];
+                    text.putInt(0x48000001 | (int) ((target - TEXT_ADDRESS - text.position()) & 0x03fffffc)); // bl function
+                    continue;
+                }
+                text.putInt(0x38600000 | random.nextInt(0x10000)); // li r3, imm
+            }
+            writer.addRelocation(textSection, TEXT_ADDRESS + text.position(), ElfRelocation.R_PPC_REL24, firstImport + random.nextInt(imports), 0);
+            text.putInt(0x48000001); // bl import
+            writer.addRelocation(textSection, TEXT_ADDRESS + text.position() + 2, ElfRelocation.R_PPC_ADDR16_HA, dataSymbol, f * 4);
+            text.putInt(0x3C600000); // lis r3, data@ha
+            text.putInt(0x4E800020); // blr
+            writer.addSymbol("function_" + f, address, words[f] * 4, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, textSection);
+            if (f % 16 == 0) {
+                writer.addExport("function_" + f, address, false);
+            }
+        }
+        return writer.toByteArray();
+    }
+}
@@ -8,26 +8,22 @@ public class ElfExport {
     private final int nameIndex;
     private final ByteBuffer buf;
     private final boolean isData;
+    private final boolean isTLS;
 
     // Export SHT_RPL_EXPORTS name TLS flag
-    private static final int EXN_RPL_TLS = 0x80000000;
+    static final int EXN_RPL_TLS = 0x80000000;
 
     public ElfExport(ByteBuffer buf, int offset, boolean isData) {
         this.buf = buf;
         this.offset = buf.getInt(offset + 0) & 0xFFFFFFFFL;
-        this.nameIndex = buf.getInt(offset + 4) & ~EXN_RPL_TLS;
+        int name = buf.getInt(offset + 4);
+        this.nameIndex = name & ~EXN_RPL_TLS;
         this.isData = isData;
+        this.isTLS = (name & EXN_RPL_TLS) != 0;
     }
 
     public String name() {
-        int pos = nameIndex;
-        StringBuilder result = new StringBuilder();
-
-        for (byte b; (b = buf.get(pos)) != 0; pos++) {
-            result.append((char) b);
-        }
-
-        return result.toString();
+        return ElfStrings.decode(buf, nameIndex);
     }
 
     public long offset() {
@@ -38,6 +34,13 @@ public class ElfExport {
         return isData;
     }
 
+    /**
+     * @return true if the export is a thread local variable.
+     */
+    public boolean isTLS() {
+        return isTLS;
+    }
+
     @Override
     public String toString() {
         return String.format("%s@%08X(%s)", name(), offset(), (isData() ? "data" : "function"));
@@ -1,22 +1,32 @@
 package de.orb.wiiu.rpxparser;
 
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 public class ElfExportsTable extends ElfSection implements Iterable<ElfExport> {
 
-    ElfExportsTable(ElfReader reader, int offset) {
-        super(reader, offset);
+    ElfExportsTable(ElfReader reader, int index, int offset) {
+        super(reader, index, offset);
     }
 
     private ElfExport export(int index) {
+        ElfParseListener listener = reader.parseListener;
+        if (listener != null) {
+            listener.onExportCreated(this);
+        }
         return new ElfExport(getSectionBuffer(), 8 + index * 8, name().startsWith(".d"));
     }
 
     @Override
     public int count() {
-        return getSectionBuffer().getInt(0);
+        ByteBuffer buf = getSectionBuffer();
+        int count = buf.limit() < 8 ? -1 : buf.getInt(0);
+        if (count < 0 || 8 + 8L * count > buf.limit()) {
+            throw failure("Invalid export count " + count, null);
+        }
+        return count;
     }
 
     public Stream<ElfExport> stream() {
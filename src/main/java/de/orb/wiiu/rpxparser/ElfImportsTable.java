@@ -1,23 +1,27 @@
 package de.orb.wiiu.rpxparser;
 
-import java.nio.ByteBuffer;
-
 public class ElfImportsTable extends ElfRelocationTable {
 
-    ElfImportsTable(ElfReader reader, int offset) {
-        super(reader, offset);
+    private volatile String rplname;
+
+    ElfImportsTable(ElfReader reader, int index, int offset) {
+        super(reader, index, offset);
     }
 
     public String rplname() {
-        ByteBuffer buf = getSectionBuffer();
-        int pos = (int) 8;
-
-        StringBuilder result = new StringBuilder();
-
-        for (byte b; (b = buf.get(pos)) != 0; pos++) {
-            result.append((char) b);
+        String result = rplname;
+        if (result == null) {
+            try {
+                result = ElfStrings.decode(getSectionBuffer(), 8);
+            } catch (IndexOutOfBoundsException e) {
+                throw failure(e.getMessage(), e);
+            }
+            if (reader.internStrings) {
+                result = result.intern();
+            }
+            rplname = result;
         }
-        return result.toString();
+        return result;
     }
 
 }
@@ -0,0 +1,197 @@
+package de.orb.wiiu.rpxparser;
+
+/**
+ * Upper bounds an {@link ElfReader} checks against the section headers before any
+ * section is read, so a malformed or hostile file is rejected with an
+ * {@link ElfSectionException} instead of causing huge allocations.
+ * <p>
+ * The default {@link #ElfLimits()} are meant for untrusted input, {@link #NONE}
+ * only enforces what is needed to address the data at all.
+ */
+public class ElfLimits {
+    /**
+     * No limits besides sections having to fit into the file and into an array.
+     */
+    public static final ElfLimits NONE = new ElfLimits(Integer.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, Double.POSITIVE_INFINITY, Integer.MAX_VALUE);
+
+    private final long maxSectionSize;
+    private final long maxTotalInflatedSize;
+    private final int maxSymbolCount;
+    private final double maxCompressionRatio;
+    private final long maxAllocationSize;
+
+    /**
+     * 64 MB per section, 256 MB inflated in total, one million symbols, a
+     * compression ratio of at most 100 and 256 MB for derived buffers.
+     */
+    public ElfLimits() {
+        this(64L << 20, 256L << 20, 1_000_000, 100, 256L << 20);
+    }
+
+    private ElfLimits(long maxSectionSize, long maxTotalInflatedSize, int maxSymbolCount, double maxCompressionRatio, long maxAllocationSize) {
+        this.maxSectionSize = maxSectionSize;
+        this.maxTotalInflatedSize = maxTotalInflatedSize;
+        this.maxSymbolCount = maxSymbolCount;
+        this.maxCompressionRatio = maxCompressionRatio;
+        this.maxAllocationSize = maxAllocationSize;
+    }
+
+    /**
+     * @return limits with the given maximum (inflated) size of a single section.
+     */
+    public ElfLimits withMaxSectionSize(long maxSectionSize) {
+        if (maxSectionSize < 0 || maxSectionSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("maxSectionSize must be between 0 and " + Integer.MAX_VALUE);
+        }
+        return new ElfLimits(maxSectionSize, maxTotalInflatedSize, maxSymbolCount, maxCompressionRatio, maxAllocationSize);
+    }
+
+    /**
+     * @return limits with the given maximum sum of the inflated sizes of all
+     *         compressed sections.
+     */
+    public ElfLimits withMaxTotalInflatedSize(long maxTotalInflatedSize) {
+        if (maxTotalInflatedSize < 0) {
+            throw new IllegalArgumentException("maxTotalInflatedSize < 0");
+        }
+        return new ElfLimits(maxSectionSize, maxTotalInflatedSize, maxSymbolCount, maxCompressionRatio, maxAllocationSize);
+    }
+
+    /**
+     * @return limits with the given maximum number of entries of all symbol tables.
+     */
+    public ElfLimits withMaxSymbolCount(int maxSymbolCount) {
+        if (maxSymbolCount < 0) {
+            throw new IllegalArgumentException("maxSymbolCount < 0");
+        }
+        return new ElfLimits(maxSectionSize, maxTotalInflatedSize, maxSymbolCount, maxCompressionRatio, maxAllocationSize);
+    }
+
+    /**
+     * @return limits with the given maximum ratio of inflated to compressed size of
+     *         a section.
+     */
+    public ElfLimits withMaxCompressionRatio(double maxCompressionRatio) {
+        if (!(maxCompressionRatio >= 1)) {
+            throw new IllegalArgumentException("maxCompressionRatio < 1");
+        }
+        return new ElfLimits(maxSectionSize, maxTotalInflatedSize, maxSymbolCount, maxCompressionRatio, maxAllocationSize);
+    }
+
+    /**
+     * @return limits with the given maximum size of buffers derived from a file,
+     *         e.g. the image built by {@link RPXLoader} or the bulk function data.
+     */
+    public ElfLimits withMaxAllocationSize(long maxAllocationSize) {
+        if (maxAllocationSize < 0 || maxAllocationSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("maxAllocationSize must be between 0 and " + Integer.MAX_VALUE);
+        }
+        return new ElfLimits(maxSectionSize, maxTotalInflatedSize, maxSymbolCount, maxCompressionRatio, maxAllocationSize);
+    }
+
+    public long maxSectionSize() {
+        return maxSectionSize;
+    }
+
+    public long maxTotalInflatedSize() {
+        return maxTotalInflatedSize;
+    }
+
+    public int maxSymbolCount() {
+        return maxSymbolCount;
+    }
+
+    public double maxCompressionRatio() {
+        return maxCompressionRatio;
+    }
+
+    public long maxAllocationSize() {
+        return maxAllocationSize;
+    }
+
+    /**
+     * Checks the headers of all sections of the reader.
+     */
+    void check(ElfReader reader, long sourceSize) throws ElfSectionException {
+        long totalInflated = 0;
+        long symbols = 0;
+        for (ElfSection section : reader.sections) {
+            if (section == null) {
+                continue;
+            }
+            checkData(section, sourceSize);
+            if (section.isCompressed()) {
+                totalInflated += section.size;
+                if (totalInflated > maxTotalInflatedSize) {
+                    throw new ElfSectionException(section, "Inflated size of all sections exceeds the limit of " + maxTotalInflatedSize);
+                }
+            }
+            if (section.count() > 0 && section.entrySize < minEntrySize(section)) {
+                throw new ElfSectionException(section, "Invalid entry size " + section.entrySize);
+            }
+            if (section.linkIndex < 0 || section.linkIndex >= reader.sections.length) {
+                throw new ElfSectionException(section, "Invalid link " + section.linkIndex);
+            }
+            if (section instanceof ElfSymbolTable && section.linkIndex != 0 && !(reader.sections[section.linkIndex] instanceof ElfStringTable)) {
+                throw new ElfSectionException(section, "Link " + section.linkIndex + " is not a string table");
+            }
+            if (isRelocationTable(section)) {
+                if (section.count() > 0 && !(reader.sections[section.linkIndex] instanceof ElfSymbolTable)) {
+                    throw new ElfSectionException(section, "Link " + section.linkIndex + " is not a symbol table");
+                }
+                if (section.info < 0 || section.info >= reader.sections.length) {
+                    throw new ElfSectionException(section, "Invalid target section " + section.info);
+                }
+            }
+            if (section instanceof ElfSymbolTable) {
+                symbols += section.count();
+                if (symbols > maxSymbolCount) {
+                    throw new ElfSectionException(section, "Symbol count exceeds the limit of " + maxSymbolCount);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the position, size and compression of the data of a single section.
+     */
+    void checkData(ElfSection section, long sourceSize) throws ElfSectionException {
+        if (section.type != ElfSection.SHT_NOBITS) {
+            if (section.offset + section.orgSize > sourceSize) {
+                throw new ElfSectionException(section, String.format("Data at %d with size %d is outside of the file", section.offset, section.orgSize));
+            }
+            if (section.size > maxSectionSize) {
+                throw new ElfSectionException(section, "Size " + section.size + " exceeds the limit of " + maxSectionSize);
+            }
+        }
+        if (section.isCompressed()) {
+            if (section.orgSize < 4) {
+                throw new ElfSectionException(section, "Compressed data is too short");
+            }
+            double ratio = (double) section.size / (section.orgSize - 4);
+            if (ratio > maxCompressionRatio) {
+                throw new ElfSectionException(section, String.format("Compression ratio %.1f exceeds the limit of %.1f", ratio, maxCompressionRatio));
+            }
+        }
+    }
+
+    private static boolean isRelocationTable(ElfSection section) {
+        return section instanceof ElfRelocationTable && !(section instanceof ElfImportsTable);
+    }
+
+    private static int minEntrySize(ElfSection section) {
+        if (section instanceof ElfSymbolTable) {
+            return 16;
+        }
+        if (isRelocationTable(section)) {
+            return section.type == ElfSection.SHT_RELA ? 12 : 8;
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ElfLimits(maxSectionSize=" + maxSectionSize + ", maxTotalInflatedSize=" + maxTotalInflatedSize + ", maxSymbolCount=" + maxSymbolCount
+                + ", maxCompressionRatio=" + maxCompressionRatio + ", maxAllocationSize=" + maxAllocationSize + ")";
+    }
+}
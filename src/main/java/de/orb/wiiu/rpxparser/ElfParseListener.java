@@ -0,0 +1,59 @@
+package de.orb.wiiu.rpxparser;
+
+/**
+ * Receives events while an {@link ElfReader} reads and inflates sections and
+ * creates symbol, relocation and export objects. All methods have empty
+ * defaults, so implementations only override what they need.
+ * <p>
+ * Events are delivered on the thread doing the work, possibly on several threads
+ * at once, and while the section lock is held. Implementations must be thread
+ * safe and fast. Without a listener set no timestamps are taken.
+ * <p>
+ * The header reads happen while the reader is created, they are only reported
+ * to a listener passed to
+ * {@link ElfReader#ElfReader(ElfSource, ElfLimits, ElfParseListener)}.
+ * Uncompressed sections of a buffered source, e.g. a memory mapped file, are
+ * returned as slices of the source without a read or a cache access and produce
+ * no events.
+ *
+ * @see ElfParseMetrics
+ */
+public interface ElfParseListener {
+
+    /**
+     * The ELF header, the section header table or the inflated size of a
+     * compressed section was read from a non-buffered {@link ElfSource}.
+     */
+    default void onHeaderRead(long bytes, long nanos) {
+    }
+
+    /**
+     * Section data was read from a non-buffered {@link ElfSource}, e.g. a channel.
+     */
+    default void onSectionRead(ElfSection section, long bytes, long nanos) {
+    }
+
+    /**
+     * Part or all of a compressed section was inflated.
+     *
+     * @param compressedBytes   the compressed bytes consumed
+     * @param decompressedBytes the bytes produced
+     */
+    default void onSectionInflated(ElfSection section, long compressedBytes, long decompressedBytes, long nanos) {
+    }
+
+    default void onSectionCacheHit(ElfSection section) {
+    }
+
+    default void onSectionCacheMiss(ElfSection section) {
+    }
+
+    default void onSymbolCreated(ElfSymbolTable table) {
+    }
+
+    default void onRelocationCreated(ElfRelocationTable table) {
+    }
+
+    default void onExportCreated(ElfExportsTable table) {
+    }
+}
@@ -0,0 +1,148 @@
+package de.orb.wiiu.rpxparser;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link ElfParseListener} which sums up the events in counters. One instance can
+ * be shared by many readers, e.g. to export totals into a metrics system.
+ */
+public class ElfParseMetrics implements ElfParseListener {
+    private final LongAdder headerReads = new LongAdder();
+    private final LongAdder sectionReads = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder readNanos = new LongAdder();
+    private final LongAdder inflations = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder decompressedBytes = new LongAdder();
+    private final LongAdder inflateNanos = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder symbols = new LongAdder();
+    private final LongAdder relocations = new LongAdder();
+    private final LongAdder exports = new LongAdder();
+
+    @Override
+    public void onHeaderRead(long bytes, long nanos) {
+        headerReads.increment();
+        bytesRead.add(bytes);
+        readNanos.add(nanos);
+    }
+
+    @Override
+    public void onSectionRead(ElfSection section, long bytes, long nanos) {
+        sectionReads.increment();
+        bytesRead.add(bytes);
+        readNanos.add(nanos);
+    }
+
+    @Override
+    public void onSectionInflated(ElfSection section, long compressedBytes, long decompressedBytes, long nanos) {
+        inflations.increment();
+        this.compressedBytes.add(compressedBytes);
+        this.decompressedBytes.add(decompressedBytes);
+        inflateNanos.add(nanos);
+    }
+
+    @Override
+    public void onSectionCacheHit(ElfSection section) {
+        cacheHits.increment();
+    }
+
+    @Override
+    public void onSectionCacheMiss(ElfSection section) {
+        cacheMisses.increment();
+    }
+
+    @Override
+    public void onSymbolCreated(ElfSymbolTable table) {
+        symbols.increment();
+    }
+
+    @Override
+    public void onRelocationCreated(ElfRelocationTable table) {
+        relocations.increment();
+    }
+
+    @Override
+    public void onExportCreated(ElfExportsTable table) {
+        exports.increment();
+    }
+
+    public long headerReads() {
+        return headerReads.sum();
+    }
+
+    public long sectionReads() {
+        return sectionReads.sum();
+    }
+
+    /**
+     * @return the bytes of all header and section reads.
+     */
+    public long bytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long readNanos() {
+        return readNanos.sum();
+    }
+
+    public long inflations() {
+        return inflations.sum();
+    }
+
+    public long compressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    public long decompressedBytes() {
+        return decompressedBytes.sum();
+    }
+
+    public long inflateNanos() {
+        return inflateNanos.sum();
+    }
+
+    public long cacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long cacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    public long symbols() {
+        return symbols.sum();
+    }
+
+    public long relocations() {
+        return relocations.sum();
+    }
+
+    public long exports() {
+        return exports.sum();
+    }
+
+    public void reset() {
+        headerReads.reset();
+        sectionReads.reset();
+        bytesRead.reset();
+        readNanos.reset();
+        inflations.reset();
+        compressedBytes.reset();
+        decompressedBytes.reset();
+        inflateNanos.reset();
+        cacheHits.reset();
+        cacheMisses.reset();
+        symbols.reset();
+        relocations.reset();
+        exports.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "ElfParseMetrics(headerReads=" + headerReads() + ", sectionReads=" + sectionReads() + ", bytesRead=" + bytesRead() + ", readNanos=" + readNanos() + ", inflations=" + inflations()
+                + ", compressedBytes=" + compressedBytes() + ", decompressedBytes=" + decompressedBytes() + ", inflateNanos=" + inflateNanos() + ", cacheHits="
+                + cacheHits() + ", cacheMisses=" + cacheMisses() + ", symbols=" + symbols() + ", relocations=" + relocations() + ", exports=" + exports() + ")";
+    }
+}
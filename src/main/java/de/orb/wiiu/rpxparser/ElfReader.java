@@ -16,17 +16,30 @@
 
 package de.orb.wiiu.rpxparser;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
-public class ElfReader {
+public class ElfReader implements Closeable {
     public static final short ET_NONE = 0;
     public static final short ET_REL = 1;
     public static final short ET_EXEC = 2;
@@ -64,7 +77,12 @@ public class ElfReader {
     public static final byte ELFOSABI_ARM = 97;
     public static final byte ELFOSABI_STANDALONE = -1;
 
-    final ByteBuffer buf;
+    private static final int ELF_HEADER_SIZE = 52;
+
+    final ElfSource source;
+    final ByteOrder order;
+    // the section header table, only used while the sections are read
+    private ByteBuffer headers;
     final byte abi;
     final byte abiVersion;
     final short type;
@@ -73,25 +91,75 @@ public class ElfReader {
     final int flags;
     final long entry;
     final ElfSection[] sections;
+    final ElfLimits limits;
     final ElfStringTable strtab;
+    private final Map<String, Integer> sectionsByName;
+    private final Map<Integer, List<ElfSection>> sectionsByType;
+    ElfSectionCache sectionCache = new LRUSectionCache(Long.MAX_VALUE);
+    boolean streamingInflation = false;
+    boolean internStrings = false;
+    boolean cacheStrings = true;
+    ElfParseListener parseListener = null;
 
     public static ElfReader create(String fileName) throws IOException {
         return ElfReader.create(new File(fileName));
     }
 
     public static ElfReader create(File file) throws IOException {
+        return create(file, ElfLimits.NONE);
+    }
+
+    public static ElfReader create(File file, ElfLimits limits) throws IOException {
         RandomAccessFile raf = new RandomAccessFile(file, "r");
         try {
-            return new ElfReader(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length()));
+            return new ElfReader(ElfSource.of(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length())), limits);
         } finally {
             raf.close();
         }
     }
 
+    /**
+     * Opens a reader on a channel. Only the headers are read up front, sections are
+     * read when they are accessed. Closing the reader closes the channel.
+     */
+    public static ElfReader create(SeekableByteChannel channel) throws IOException {
+        return new ElfReader(ElfSource.of(channel));
+    }
+
     public ElfReader(ByteBuffer buf) throws IOException {
-        this.buf = buf;
+        this(ElfSource.of(buf));
+    }
+
+    public ElfReader(ElfSource source) throws IOException {
+        this(source, ElfLimits.NONE);
+    }
+
+    /**
+     * Reads the headers and checks them against the given limits before any
+     * section data is touched.
+     *
+     * @throws ElfSectionException if a section violates the limits.
+     */
+    public ElfReader(ElfSource source, ElfLimits limits) throws IOException {
+        this(source, limits, null);
+    }
+
+    /**
+     * Like {@link #ElfReader(ElfSource, ElfLimits)}, with a listener which also
+     * receives the header reads done while the reader is created.
+     */
+    public ElfReader(ElfSource source, ElfLimits limits, ElfParseListener parseListener) throws IOException {
+        this.source = source;
+        this.limits = Objects.requireNonNull(limits);
+        this.parseListener = parseListener;
+        ByteBuffer buf = readHeader(0, (int) Math.min(ELF_HEADER_SIZE, source.size()));
+        if (buf.limit() < 16) {
+            throw new ElfException("Invalid ELF signature");
+        }
         byte[] ident = new byte[16];
-        buf.get(ident);
+        for (int i = 0; i < ident.length; i++) {
+            ident[i] = buf.get(i);
+        }
         if (ident[0] != 0x7f || ident[1] != 'E' || ident[2] != 'L' || ident[3] != 'F') {
             throw new ElfException("Invalid ELF signature");
         }
@@ -107,14 +175,18 @@ public class ElfReader {
 
         switch (ident[5]) {
         case 1:
-            buf.order(ByteOrder.LITTLE_ENDIAN);
+            this.order = ByteOrder.LITTLE_ENDIAN;
             break;
         case 2:
-            buf.order(ByteOrder.BIG_ENDIAN);
+            this.order = ByteOrder.BIG_ENDIAN;
             break;
         default:
             throw new ElfException("Invalid ELF endian");
         }
+        if (buf.limit() < ELF_HEADER_SIZE) {
+            throw new ElfException("Truncated ELF header");
+        }
+        buf.order(order);
 
         if (ident[6] != 1) {
             throw new ElfException("Invalid ELF version");
@@ -129,31 +201,202 @@ public class ElfReader {
 
         this.entry = buf.getInt(24) & 0xffffffffL;
         this.flags = buf.getInt(36);
-        this.sections = readSections(buf.getInt(32), buf.getShort(46) & 0xffff, buf.getShort(48) & 0xffff);
-        this.strtab = (ElfStringTable) sections[buf.getShort(50) & 0xffff];
-        if (strtab == null) {
+        this.sections = readSections(buf.getInt(32) & 0xffffffffL, buf.getShort(46) & 0xffff, buf.getShort(48) & 0xffff);
+        int strtabIndex = buf.getShort(50) & 0xffff;
+        if (strtabIndex >= sections.length || !(sections[strtabIndex] instanceof ElfStringTable)) {
             throw new ElfException(".strtab section was null");
         }
+        // the string table is checked first so that the other failures can name their section
+        limits.checkData(sections[strtabIndex], source.size());
+        this.strtab = (ElfStringTable) sections[strtabIndex];
+        limits.check(this, source.size());
+
+        this.sectionsByName = new HashMap<>();
+        Map<Integer, List<ElfSection>> byType = new HashMap<>();
+        try {
+            for (ElfSection section : sections) {
+                if (section != null) {
+                    sectionsByName.putIfAbsent(section.name(), section.index());
+                    byType.computeIfAbsent(section.type(), t -> new ArrayList<>()).add(section);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        byType.replaceAll((t, list) -> Collections.unmodifiableList(list));
+        this.sectionsByType = byType;
+    }
+
+    private ElfSection[] readSections(long start, int entrySize, int entries) throws IOException {
+        if (entries > 0 && entrySize < 40) {
+            throw new ElfException("Invalid section header size " + entrySize);
+        }
+        headers = readHeader(start, entrySize * entries).order(order);
+        try {
+            ElfSection[] sections = new ElfSection[entries];
+            for (int i = 0; i < entries; i++) {
+                sections[i] = ElfSection.read(this, i, i * entrySize);
+            }
+            return sections;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            headers = null;
+        }
     }
 
-    private ElfSection[] readSections(int start, int entrySize, int entries) {
-        ElfSection[] sections = new ElfSection[entries];
-        for (int i = 0; i < entries; i++) {
-            sections[i] = ElfSection.read(this, start + i * entrySize);
+    ByteBuffer headers() {
+        return headers;
+    }
+
+    /**
+     * Reads header data, reported to the listener as header read.
+     */
+    ByteBuffer readHeader(long position, int length) throws IOException {
+        ElfParseListener listener = parseListener;
+        if (listener == null || source.isBuffered()) {
+            return source.read(position, length);
+        }
+        long start = System.nanoTime();
+        ByteBuffer buf = source.read(position, length);
+        listener.onHeaderRead(length, System.nanoTime() - start);
+        return buf;
+    }
+
+    /**
+     * Reads from the source, wrapping I/O errors for callers which cannot throw
+     * checked exceptions.
+     */
+    ByteBuffer read(long position, int length) {
+        try {
+            return source.read(position, length).order(order);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        return sections;
     }
 
     protected Stream<ElfSection> sections() {
         return Arrays.stream(sections).filter(s -> s != null);
     }
 
+    /**
+     * @return the section at the given index of the section header table.
+     */
+    public Optional<ElfSection> section(int index) {
+        return index >= 0 && index < sections.length ? Optional.ofNullable(sections[index]) : Optional.empty();
+    }
+
+    /**
+     * Looks up a section by name. The names are decoded once when the reader is
+     * created, if several sections share a name the first one is returned.
+     */
     public Optional<ElfSection> section(String name) {
-        return sections().filter(section -> section.name().equals(name)).findFirst();
+        return section(sectionIndex(name));
+    }
+
+    /**
+     * @return the index of the first section with the given name or -1.
+     */
+    public int sectionIndex(String name) {
+        return sectionsByName.getOrDefault(name, -1);
+    }
+
+    /**
+     * @return the sections of the given type in section header table order.
+     */
+    public List<ElfSection> sections(int type) {
+        return sectionsByType.getOrDefault(type, Collections.emptyList());
+    }
+
+    /**
+     * Inflates all compressed sections on the common fork-join pool.
+     * 
+     * @see #inflateSections(Executor)
+     */
+    public CompletableFuture<Void> inflateSections() {
+        return inflateSections(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Inflates all compressed sections in parallel on the given executor and puts
+     * them into the section cache. The largest sections are submitted first.
+     * 
+     * @return a future which completes when every section has been inflated.
+     */
+    public CompletableFuture<Void> inflateSections(Executor executor) {
+        return CompletableFuture.allOf(sections() //
+                .filter(ElfSection::isCompressed) //
+                .sorted(Comparator.comparingLong(ElfSection::size).reversed()) //
+                .map(section -> CompletableFuture.runAsync(section::getSectionBuffer, executor)) //
+                .toArray(CompletableFuture[]::new));
+    }
+
+    public ElfSectionCache sectionCache() {
+        return sectionCache;
+    }
+
+    /**
+     * Sets the cache holding inflated sections. Sections already in the previous
+     * cache are not moved over.
+     */
+    public void setSectionCache(ElfSectionCache sectionCache) {
+        this.sectionCache = Objects.requireNonNull(sectionCache);
+    }
+
+    public boolean isStreamingInflation() {
+        return streamingInflation;
+    }
+
+    /**
+     * Enables inflating compressed sections only as far as they are read, see
+     * {@link ElfSection#getSectionBuffer(long)}.
+     */
+    public void setStreamingInflation(boolean streamingInflation) {
+        this.streamingInflation = streamingInflation;
+    }
+
+    public boolean isInternStrings() {
+        return internStrings;
+    }
+
+    /**
+     * Enables interning of decoded names, useful when many files with the same
+     * imports and symbol names are kept open.
+     */
+    public void setInternStrings(boolean internStrings) {
+        this.internStrings = internStrings;
+    }
+
+    public boolean isCacheStrings() {
+        return cacheStrings;
+    }
+
+    /**
+     * Enables caching of decoded names per string table, on by default. Without
+     * the cache every lookup decodes the name again.
+     */
+    public void setCacheStrings(boolean cacheStrings) {
+        this.cacheStrings = cacheStrings;
+    }
+
+    public ElfLimits limits() {
+        return limits;
+    }
+
+    public ElfParseListener parseListener() {
+        return parseListener;
+    }
+
+    /**
+     * Sets the listener receiving read, inflate, cache and object creation events,
+     * e.g. an {@link ElfParseMetrics}. <code>null</code> disables the events.
+     */
+    public void setParseListener(ElfParseListener parseListener) {
+        this.parseListener = parseListener;
     }
 
     public ByteOrder endian() {
-        return buf.order();
+        return order;
     }
 
     public byte abi() {
@@ -183,4 +426,13 @@ public class ElfReader {
     public long entry() {
         return entry;
     }
+
+    /**
+     * Closes the underlying source, e.g. the channel passed to
+     * {@link #create(SeekableByteChannel)}.
+     */
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
 }
@@ -21,6 +21,23 @@ import java.util.Optional;
 
 public class ElfRelocation {
     public static final int R_PPC_NONE = 0;
+    public static final int R_PPC_ADDR32 = 1;
+    public static final int R_PPC_ADDR24 = 2;
+    public static final int R_PPC_ADDR16 = 3;
+    public static final int R_PPC_ADDR16_LO = 4;
+    public static final int R_PPC_ADDR16_HI = 5;
+    public static final int R_PPC_ADDR16_HA = 6;
+    public static final int R_PPC_ADDR14 = 7;
+    public static final int R_PPC_REL24 = 10;
+    public static final int R_PPC_REL14 = 11;
+    public static final int R_PPC_REL32 = 26;
+    public static final int R_PPC_DTPMOD32 = 68;
+    public static final int R_PPC_DTPREL32 = 78;
+    public static final int R_PPC_EMB_SDA21 = 109;
+    public static final int R_PPC_EMB_RELSDA = 116;
+    public static final int R_PPC_GHS_REL16_HA = 251;
+    public static final int R_PPC_GHS_REL16_HI = 252;
+    public static final int R_PPC_GHS_REL16_LO = 253;
 
     final Optional<ElfSymbolTable> symtab;
     final long offset;
@@ -0,0 +1,119 @@
+package de.orb.wiiu.rpxparser;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The entries of an {@link ElfRelocationTable} as primitive columns, read from
+ * the section buffer in one pass. Offsets are stored as unsigned 32 bit values
+ * in an <code>int[]</code>.
+ * <p>
+ * The arrays returned by {@link #offsets()}, {@link #types()},
+ * {@link #symbols()} and {@link #addends()} are the backing storage and must not
+ * be modified.
+ */
+public class ElfRelocationColumns {
+    private final int[] offsets;
+    private final int[] types;
+    private final int[] symbols;
+    private final int[] addends;
+
+    private ElfRelocationColumns(int[] offsets, int[] types, int[] symbols, int[] addends) {
+        this.offsets = offsets;
+        this.types = types;
+        this.symbols = symbols;
+        this.addends = addends;
+    }
+
+    static ElfRelocationColumns read(ElfRelocationTable table) {
+        ByteBuffer buf = table.getSectionBuffer();
+        int entrySize = (int) table.entrySize();
+        boolean hasAddend = entrySize >= 12;
+        int count = table.count();
+        int[] offsets = new int[count];
+        int[] types = new int[count];
+        int[] symbols = new int[count];
+        int[] addends = new int[count];
+        for (int i = 0, pos = 0; i < count; i++, pos += entrySize) {
+            offsets[i] = buf.getInt(pos);
+            int info = buf.getInt(pos + 4);
+            types[i] = info & 0xff;
+            symbols[i] = info >>> 8;
+            addends[i] = hasAddend ? buf.getInt(pos + 8) : 0;
+        }
+        return new ElfRelocationColumns(offsets, types, symbols, addends);
+    }
+
+    public int count() {
+        return offsets.length;
+    }
+
+    public long offset(int index) {
+        return offsets[index] & 0xffffffffL;
+    }
+
+    public int type(int index) {
+        return types[index];
+    }
+
+    public int symbol(int index) {
+        return symbols[index];
+    }
+
+    public int addend(int index) {
+        return addends[index];
+    }
+
+    public int[] offsets() {
+        return offsets;
+    }
+
+    public int[] types() {
+        return types;
+    }
+
+    public int[] symbols() {
+        return symbols;
+    }
+
+    public int[] addends() {
+        return addends;
+    }
+
+    /**
+     * @return a copy of the columns ordered by (unsigned) offset. Entries with the
+     *         same offset keep their order.
+     */
+    public ElfRelocationColumns sortedByOffset() {
+        int count = count();
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            // flip the sign bit so that the signed sort orders offsets unsigned
+            keys[i] = (((offsets[i] & 0xffffffffL) << 32) | i) ^ Long.MIN_VALUE;
+        }
+        Arrays.sort(keys);
+        int[] sortedOffsets = new int[count];
+        int[] sortedTypes = new int[count];
+        int[] sortedSymbols = new int[count];
+        int[] sortedAddends = new int[count];
+        for (int i = 0; i < count; i++) {
+            int index = (int) (keys[i] ^ Long.MIN_VALUE);
+            sortedOffsets[i] = offsets[index];
+            sortedTypes[i] = types[index];
+            sortedSymbols[i] = symbols[index];
+            sortedAddends[i] = addends[index];
+        }
+        return new ElfRelocationColumns(sortedOffsets, sortedTypes, sortedSymbols, sortedAddends);
+    }
+
+    /**
+     * @return the number of relocations per type, indexed by type.
+     */
+    public int[] typeHistogram() {
+        int[] histogram = new int[256];
+        for (int type : types) {
+            histogram[type]++;
+        }
+        return histogram;
+    }
+}
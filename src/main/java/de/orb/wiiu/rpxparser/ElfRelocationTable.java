@@ -22,14 +22,25 @@ import java.util.stream.Stream;
 
 public class ElfRelocationTable extends ElfSection implements Iterable<ElfRelocation> {
 
-    ElfRelocationTable(ElfReader reader, int offset) {
-        super(reader, offset);
+    ElfRelocationTable(ElfReader reader, int index, int offset) {
+        super(reader, index, offset);
     }
 
     public ElfRelocation relocation(int index) {
+        ElfParseListener listener = reader.parseListener;
+        if (listener != null) {
+            listener.onRelocationCreated(this);
+        }
         return new ElfRelocation(getSectionBuffer(), this, (int) (index * entrySize), reader);
     }
 
+    /**
+     * Reads all entries of this table into primitive columns.
+     */
+    public ElfRelocationColumns columns() {
+        return ElfRelocationColumns.read(this);
+    }
+
     public Stream<ElfRelocation> stream() {
         return IntStream.range(0, count()).mapToObj(i -> relocation(i));
     }
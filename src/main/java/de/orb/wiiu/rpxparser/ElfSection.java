@@ -16,6 +16,8 @@
 
 package de.orb.wiiu.rpxparser;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.util.Optional;
 import java.util.zip.DataFormatException;
@@ -42,6 +44,7 @@ public class ElfSection {
     public static final int SHT_HIUSER = 0xffffffff;
 
     final ElfReader reader;
+    final int index;
     final int nameIndex;
     final int type;
     final long flags;
@@ -54,9 +57,10 @@ public class ElfSection {
     final long align;
     final long entrySize;
 
-    ElfSection(ElfReader reader, int offset) {
-        ByteBuffer buf = reader.buf;
+    ElfSection(ElfReader reader, int index, int offset) {
+        ByteBuffer buf = reader.headers();
         this.reader = reader;
+        this.index = index;
         this.nameIndex = buf.getInt(offset);
         this.type = buf.getInt(offset + 4);
 
@@ -71,9 +75,12 @@ public class ElfSection {
 
         long tmp_size = orgSize;
         // Fix the size of section when its compressed.
-        if ((flags & RPX_SHDR_ZLIB_FLAG) == RPX_SHDR_ZLIB_FLAG) {
-            buf.position((int) this.offset);
-            tmp_size = buf.getInt();
+        if (isCompressed()) {
+            try {
+                tmp_size = reader.readHeader(this.offset, 4).order(reader.order).getInt(0) & 0xffffffffL;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
         size = tmp_size;
     }
@@ -83,6 +90,28 @@ public class ElfSection {
         return reader.strtab.string(nameIndex);
     }
 
+    /**
+     * @return the index of this section in the section header table.
+     */
+    public int index() {
+        return index;
+    }
+
+    /**
+     * @return the name or null if it can not be decoded (yet).
+     */
+    String nameOrNull() {
+        // the string table itself is skipped, its failures would recurse
+        if (reader.strtab == null || reader.strtab == this) {
+            return null;
+        }
+        try {
+            return name();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
     public int type() {
         return type;
     }
@@ -104,7 +133,7 @@ public class ElfSection {
     }
 
     public Optional<ElfSection> link() {
-        return Optional.ofNullable(reader.sections[linkIndex]);
+        return reader.section(linkIndex);
     }
 
     public int info() {
@@ -128,61 +157,194 @@ public class ElfSection {
         return getClass().getSimpleName() + '(' + name() + ')';
     }
 
-    ByteBuffer curBuffer = null;
+    public boolean isCompressed() {
+        return (flags & RPX_SHDR_ZLIB_FLAG) == RPX_SHDR_ZLIB_FLAG;
+    }
+
+    volatile ByteBuffer curBuffer = null;
+    // guarded by this
+    ElfSectionInflater partialInflater = null;
 
+    /**
+     * Returns the content of this section. Uncompressed sections are returned as a
+     * slice of the reader's buffer, so no data is copied when the file is memory
+     * mapped. Compressed sections are inflated into a heap buffer which is kept in
+     * the reader's {@link ElfSectionCache}.
+     * <p>
+     * The returned buffer is shared with other callers, possibly on other threads.
+     * Only use absolute reads on it or work on a {@link ByteBuffer#duplicate()}.
+     *
+     * @throws UncheckedIOException with an {@link ElfSectionException} if the
+     *                              section can not be read or inflated.
+     */
     public ByteBuffer getSectionBuffer() {
-        if (curBuffer != null) {
-            return curBuffer;
+        ByteBuffer buffer = curBuffer;
+        if (buffer != null) {
+            return buffer;
         }
-        ByteBuffer buf = reader.buf;
-        buf.position((int) offset);
-        byte[] data = new byte[(int) orgSize];
-        buf.get(data, 0, (int) orgSize);
-
-        if ((flags & RPX_SHDR_ZLIB_FLAG) == RPX_SHDR_ZLIB_FLAG) {
-            long section_size_inflated = buf.getInt((int) offset) & 0xFFFFFFFF;
-            Inflater inflater = new Inflater();
-            inflater.setInput(data, 4, (int) orgSize - 4); // the first byte is the size
+        if (!isCompressed() && reader.source.isBuffered()) {
+            buffer = rawBuffer();
+            curBuffer = buffer;
+            return buffer;
+        }
+        synchronized (this) {
+            ElfSectionCache cache = reader.sectionCache;
+            buffer = cached(cache);
+            if (buffer == null) {
+                if (!isCompressed()) {
+                    buffer = rawBuffer();
+                } else {
+                    buffer = partialInflater != null ? inflatePartial(size) : inflate();
+                }
+                cache.put(this, buffer);
+            }
+            return buffer;
+        }
+    }
 
-            byte[] decompressed = new byte[(int) section_size_inflated];
+    /**
+     * Returns a buffer holding at least the first <code>minSize</code> bytes of this
+     * section. With streaming inflation enabled on the reader a compressed section
+     * is only inflated as far as requested, the remaining data is inflated on later
+     * calls. The partially inflated data is not accounted in the section cache
+     * until the whole section has been inflated.
+     */
+    public ByteBuffer getSectionBuffer(long minSize) {
+        if (!isCompressed() || !reader.streamingInflation) {
+            return getSectionBuffer();
+        }
+        synchronized (this) {
+            ByteBuffer inflated = cached(reader.sectionCache);
+            if (inflated != null) {
+                return inflated;
+            }
+            inflated = inflatePartial(minSize);
+            if (partialInflater == null) {
+                reader.sectionCache.put(this, inflated);
+            }
+            return inflated;
+        }
+    }
 
-            try {
-                inflater.inflate(decompressed);
-            } catch (DataFormatException e) {
-                // TODO
-                e.printStackTrace();
+    private ByteBuffer cached(ElfSectionCache cache) {
+        ByteBuffer buffer = cache.get(this);
+        ElfParseListener listener = reader.parseListener;
+        if (listener != null) {
+            if (buffer != null) {
+                listener.onSectionCacheHit(this);
+            } else {
+                listener.onSectionCacheMiss(this);
             }
+        }
+        return buffer;
+    }
 
+    private ByteBuffer inflatePartial(long minSize) {
+        if (partialInflater == null) {
+            partialInflater = new ElfSectionInflater(this);
+        }
+        ElfSectionInflater inflater = partialInflater;
+        ElfParseListener listener = reader.parseListener;
+        long start = listener != null ? System.nanoTime() : 0;
+        int inflatedBefore = inflater.inflatedSize();
+        long readBefore = inflater.bytesRead();
+        ByteBuffer inflated;
+        try {
+            inflated = inflater.inflateTo(minSize);
+        } catch (DataFormatException e) {
+            partialInflater = null;
             inflater.end();
-            data = decompressed;
+            throw failure("Failed to inflate", e);
+        }
+        // a stream ending before the section does is only noticed once it is finished
+        if (inflater.inflatedSize() < Math.min(minSize, size) || inflater.isFinished() && inflater.inflatedSize() < size) {
+            partialInflater = null;
+            inflater.end();
+            throw failure("Inflated " + inflater.inflatedSize() + " of " + size + " bytes", null);
+        }
+        if (listener != null) {
+            listener.onSectionInflated(this, inflater.bytesRead() - readBefore, inflater.inflatedSize() - inflatedBefore, System.nanoTime() - start);
+        }
+        if (inflater.isFinished()) {
+            partialInflater = null;
+            inflater.end();
+        }
+        return inflated;
+    }
+
+    UncheckedIOException failure(String message, Throwable cause) {
+        return new UncheckedIOException(new ElfSectionException(this, message, cause));
+    }
+
+    ByteBuffer rawBuffer() {
+        if (type == SHT_NOBITS) {
+            return ByteBuffer.allocate(0).order(reader.order);
+        }
+        ElfParseListener listener = reader.parseListener;
+        if (listener == null || reader.source.isBuffered()) {
+            return reader.read(offset, (int) orgSize);
+        }
+        long start = System.nanoTime();
+        ByteBuffer buf = reader.read(offset, (int) orgSize);
+        listener.onSectionRead(this, orgSize, System.nanoTime() - start);
+        return buf;
+    }
+
+    ByteBuffer inflate() {
+        ByteBuffer data = rawBuffer();
+        Inflater inflater = new Inflater();
+        // the first 4 bytes are the inflated size
+        if (data.hasArray()) {
+            inflater.setInput(data.array(), data.arrayOffset() + 4, (int) orgSize - 4);
+        } else {
+            byte[] compressed = new byte[(int) orgSize - 4];
+            data.position(4);
+            data.get(compressed);
+            inflater.setInput(compressed);
         }
 
-        curBuffer = ByteBuffer.wrap(data).order(buf.order());
-        return curBuffer;
+        byte[] decompressed = new byte[(int) size];
+
+        ElfParseListener listener = reader.parseListener;
+        long start = listener != null ? System.nanoTime() : 0;
+        try {
+            int inflated = inflater.inflate(decompressed);
+            if (listener != null) {
+                listener.onSectionInflated(this, inflater.getBytesRead(), inflater.getBytesWritten(), System.nanoTime() - start);
+            }
+            if (inflated < size) {
+                throw failure("Inflated " + inflated + " of " + size + " bytes", null);
+            }
+        } catch (DataFormatException e) {
+            throw failure("Failed to inflate", e);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(decompressed).order(reader.order);
     }
 
     public static final int RPX_SHDR_ZLIB_FLAG = 0x08000000;
 
-    static ElfSection read(ElfReader reader, int offset) {
-        int type = reader.buf.getInt(offset + 4);
+    static ElfSection read(ElfReader reader, int index, int offset) {
+        int type = reader.headers().getInt(offset + 4);
 
         switch (type) {
         case SHT_NULL:
             return null;
         case SHT_SYMTAB:
         case SHT_DYNSYM:
-            return new ElfSymbolTable(reader, offset);
+            return new ElfSymbolTable(reader, index, offset);
         case SHT_STRTAB:
-            return new ElfStringTable(reader, offset);
+            return new ElfStringTable(reader, index, offset);
         case SHT_RELA:
         case SHT_REL:
-            return new ElfRelocationTable(reader, offset);
+            return new ElfRelocationTable(reader, index, offset);
         case SHT_RPL_IMPORTS:
-            return new ElfImportsTable(reader, offset);
+            return new ElfImportsTable(reader, index, offset);
         case SHT_RPL_EXPORTS:
-            return new ElfExportsTable(reader, offset);
+            return new ElfExportsTable(reader, index, offset);
         default:
-            return new ElfSection(reader, offset);
+            return new ElfSection(reader, index, offset);
         }
     }
 }
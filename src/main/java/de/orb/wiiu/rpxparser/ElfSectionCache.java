@@ -0,0 +1,19 @@
+package de.orb.wiiu.rpxparser;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Holds the inflated content of compressed sections. A cache may drop entries at
+ * any time, evicted sections are inflated again on their next access.
+ */
+public interface ElfSectionCache {
+
+    /**
+     * @return the cached content of the section or null if it is not cached.
+     */
+    ByteBuffer get(ElfSection section);
+
+    void put(ElfSection section, ByteBuffer buffer);
+
+    void remove(ElfSection section);
+}
@@ -0,0 +1,44 @@
+package de.orb.wiiu.rpxparser;
+
+/**
+ * An {@link ElfException} caused by a single section, carrying the index, type
+ * and, if it could be decoded, the name of that section.
+ */
+public class ElfSectionException extends ElfException {
+    private static final long serialVersionUID = 1L;
+
+    private final int sectionIndex;
+    private final int sectionType;
+    private final String sectionName;
+
+    public ElfSectionException(ElfSection section, String message) {
+        this(section, message, null);
+    }
+
+    public ElfSectionException(ElfSection section, String message, Throwable cause) {
+        super(describe(section) + ": " + message, cause);
+        this.sectionIndex = section.index();
+        this.sectionType = section.type();
+        this.sectionName = section.nameOrNull();
+    }
+
+    private static String describe(ElfSection section) {
+        String name = section.nameOrNull();
+        return "Section " + section.index() + (name != null ? " (" + name + ")" : "");
+    }
+
+    public int sectionIndex() {
+        return sectionIndex;
+    }
+
+    public int sectionType() {
+        return sectionType;
+    }
+
+    /**
+     * @return the name of the section or null if it could not be decoded.
+     */
+    public String sectionName() {
+        return sectionName;
+    }
+}
@@ -0,0 +1,73 @@
+package de.orb.wiiu.rpxparser;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Inflates a compressed section step by step. The inflater state is kept between
+ * calls, so reading further into the section resumes where the last call stopped.
+ * Not thread safe, the owning {@link ElfSection} synchronizes the access.
+ */
+class ElfSectionInflater {
+    private static final int MIN_CHUNK = 64 * 1024;
+
+    private final ElfSection section;
+    private final Inflater inflater = new Inflater();
+    private byte[] data = new byte[0];
+    private int inflated;
+
+    ElfSectionInflater(ElfSection section) {
+        this.section = section;
+        ByteBuffer raw = section.rawBuffer();
+        // the first 4 bytes are the inflated size
+        if (raw.hasArray()) {
+            inflater.setInput(raw.array(), raw.arrayOffset() + 4, raw.remaining() - 4);
+        } else {
+            byte[] compressed = new byte[raw.remaining() - 4];
+            raw.position(4);
+            raw.get(compressed);
+            inflater.setInput(compressed);
+        }
+    }
+
+    /**
+     * Inflates the section at least up to <code>end</code> (or its end) and returns
+     * the inflated part.
+     */
+    ByteBuffer inflateTo(long end) throws DataFormatException {
+        int target = (int) Math.min(end, section.size);
+        if (inflated < target && !isFinished()) {
+            if (data.length < target) {
+                long grown = Math.max(target, Math.max(2L * data.length, MIN_CHUNK));
+                byte[] tmp = new byte[(int) Math.min(grown, section.size)];
+                System.arraycopy(data, 0, tmp, 0, inflated);
+                data = tmp;
+            }
+            while (inflated < target) {
+                int n = inflater.inflate(data, inflated, data.length - inflated);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += n;
+            }
+        }
+        return ByteBuffer.wrap(data, 0, inflated).slice().order(section.reader.order);
+    }
+
+    int inflatedSize() {
+        return inflated;
+    }
+
+    long bytesRead() {
+        return inflater.getBytesRead();
+    }
+
+    boolean isFinished() {
+        return inflated == section.size || inflater.finished();
+    }
+
+    void end() {
+        inflater.end();
+    }
+}
@@ -0,0 +1,142 @@
+package de.orb.wiiu.rpxparser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The bytes an {@link ElfReader} parses. Sections are fetched with positional
+ * reads when they are first accessed, so a reader on a channel only holds the
+ * headers and the sections currently in use.
+ */
+public interface ElfSource extends Closeable {
+
+    /**
+     * Reads <code>length</code> bytes starting at <code>position</code>. The
+     * returned buffer may be shared with other callers and must only be read.
+     */
+    ByteBuffer read(long position, int length) throws IOException;
+
+    long size() throws IOException;
+
+    /**
+     * @return true if {@link #read(long, int)} returns views on memory which is
+     *         held anyway, e.g. a heap or memory mapped buffer. Sections of such
+     *         sources are not put into the section cache.
+     */
+    default boolean isBuffered() {
+        return false;
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    static ElfSource of(ByteBuffer buf) {
+        return new ElfSource() {
+            @Override
+            public ByteBuffer read(long position, int length) throws IOException {
+                if (position < 0 || length < 0 || position + length > buf.limit()) {
+                    throw new ElfException("Read of " + length + " bytes at " + position + " is outside of the file");
+                }
+                ByteBuffer tmp = buf.duplicate();
+                tmp.limit((int) position + length);
+                tmp.position((int) position);
+                return tmp.slice();
+            }
+
+            @Override
+            public long size() {
+                return buf.limit();
+            }
+
+            @Override
+            public boolean isBuffered() {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * A source reading from a channel. {@link FileChannel}s are read with
+     * positional reads, other channels are repositioned under a lock. Closing the
+     * source closes the channel.
+     */
+    static ElfSource of(SeekableByteChannel channel) {
+        return new ElfSource() {
+            @Override
+            public ByteBuffer read(long position, int length) throws IOException {
+                if (position < 0 || length < 0 || position + length > channel.size()) {
+                    throw new ElfException("Read of " + length + " bytes at " + position + " is outside of the file");
+                }
+                ByteBuffer buf = ByteBuffer.allocate(length);
+                if (channel instanceof FileChannel) {
+                    FileChannel fc = (FileChannel) channel;
+                    while (buf.hasRemaining()) {
+                        if (fc.read(buf, position + buf.position()) < 0) {
+                            throw new ElfException("Unexpected end of file");
+                        }
+                    }
+                } else {
+                    synchronized (channel) {
+                        channel.position(position);
+                        while (buf.hasRemaining()) {
+                            if (channel.read(buf) < 0) {
+                                throw new ElfException("Unexpected end of file");
+                            }
+                        }
+                    }
+                }
+                buf.flip();
+                return buf;
+            }
+
+            @Override
+            public long size() throws IOException {
+                return channel.size();
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+
+    /**
+     * A source for a channel without random access, e.g. an entry of an archive.
+     * The channel is copied into a temporary file which is deleted when the source
+     * is closed, sections are then read from that file on demand.
+     */
+    static ElfSource spool(ReadableByteChannel channel) throws IOException {
+        Path tmp = Files.createTempFile("rpx", ".tmp");
+        FileChannel file;
+        try {
+            file = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        try {
+            long position = 0;
+            long n;
+            while ((n = file.transferFrom(channel, position, 1 << 20)) > 0) {
+                position += n;
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                file.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        return of(file);
+    }
+}
@@ -16,26 +16,112 @@
 
 package de.orb.wiiu.rpxparser;
 
-import java.nio.ByteBuffer;
-
 public class ElfStringTable extends ElfSection {
 
-    ElfStringTable(ElfReader reader, int offset) {
-        super(reader, offset);
+    private volatile Cache cache;
+
+    ElfStringTable(ElfReader reader, int index, int offset) {
+        super(reader, index, offset);
     }
 
+    /**
+     * Returns the string at the given offset. Decoded strings are cached per
+     * table unless disabled on the reader, and interned if enabled on the reader.
+     */
     public String string(int index) {
-        ByteBuffer buf = getSectionBuffer();
+        Cache cache = reader.cacheStrings ? cache() : null;
+        String result = cache != null ? cache.get(index) : null;
+        if (result == null) {
+            try {
+                result = ElfStrings.decode(getSectionBuffer(), index);
+            } catch (IndexOutOfBoundsException e) {
+                throw failure(e.getMessage(), e);
+            }
+            if (reader.internStrings) {
+                result = result.intern();
+            }
+            if (cache != null) {
+                put(index, result);
+            }
+        }
+        return result;
+    }
 
-        int pos = (int) index;
+    private Cache cache() {
+        Cache result = cache;
+        if (result == null) {
+            synchronized (this) {
+                result = cache;
+                if (result == null) {
+                    cache = result = new Cache(16);
+                }
+            }
+        }
+        return result;
+    }
 
-        StringBuilder result = new StringBuilder();
+    private synchronized void put(int index, String string) {
+        Cache current = cache;
+        if (current.size * 2 >= current.keys.length) {
+            Cache grown = new Cache(current.keys.length * 2);
+            for (int i = 0; i < current.keys.length; i++) {
+                if (current.keys[i] != 0) {
+                    grown.put(current.keys[i] - 1, current.values[i]);
+                }
+            }
+            cache = current = grown;
+        }
+        current.put(index, string);
+    }
 
-        for (byte b; (b = buf.get(pos)) != 0; pos++) {
-            result.append((char) b);
+    /**
+     * Open addressing table from offset to string. Slots are written once under
+     * the lock of the table, reads do not lock: a slot whose key is visible but
+     * whose value is not yet is treated as a miss.
+     */
+    private static final class Cache {
+        // offset + 1, 0 marks a free slot
+        final int[] keys;
+        final String[] values;
+        int size;
+
+        Cache(int capacity) {
+            keys = new int[capacity];
+            values = new String[capacity];
         }
 
-        return result.toString();
-    }
+        String get(int index) {
+            int mask = keys.length - 1;
+            for (int slot = mix(index) & mask;; slot = (slot + 1) & mask) {
+                int key = keys[slot];
+                if (key == index + 1) {
+                    return values[slot];
+                }
+                if (key == 0) {
+                    return null;
+                }
+            }
+        }
 
+        void put(int index, String string) {
+            int mask = keys.length - 1;
+            for (int slot = mix(index) & mask;; slot = (slot + 1) & mask) {
+                int key = keys[slot];
+                if (key == index + 1) {
+                    return;
+                }
+                if (key == 0) {
+                    values[slot] = string;
+                    keys[slot] = index + 1;
+                    size++;
+                    return;
+                }
+            }
+        }
+
+        private static int mix(int index) {
+            int h = index * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
 }
@@ -0,0 +1,118 @@
+package de.orb.wiiu.rpxparser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Helpers for NUL terminated strings inside section buffers.
+ */
+final class ElfStrings {
+
+    private ElfStrings() {
+    }
+
+    /**
+     * Decodes the NUL terminated UTF-8 string at <code>pos</code>.
+     */
+    static String decode(ByteBuffer buf, int pos) {
+        if (pos < 0 || pos >= buf.limit()) {
+            throw new IndexOutOfBoundsException("String at " + pos + " is outside of the table");
+        }
+        if (buf.hasArray()) {
+            byte[] array = buf.array();
+            int start = buf.arrayOffset() + pos;
+            int end = start;
+            int limit = buf.arrayOffset() + buf.limit();
+            while (end < limit && array[end] != 0) {
+                end++;
+            }
+            if (end == limit) {
+                throw new IndexOutOfBoundsException("Unterminated string at " + pos);
+            }
+            return new String(array, start, end - start, StandardCharsets.UTF_8);
+        }
+        int end = pos;
+        while (buf.get(end) != 0) {
+            end++;
+        }
+        byte[] bytes = new byte[end - pos];
+        ByteBuffer tmp = buf.duplicate();
+        tmp.position(pos);
+        tmp.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares the string at <code>pos</code> with <code>name</code> without
+     * decoding it.
+     */
+    static boolean equals(ByteBuffer buf, int pos, String name) {
+        int length = name.length();
+        if (pos < 0 || pos + length >= buf.limit()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            if (c >= 0x80) {
+                return equals(buf, pos, name.getBytes(StandardCharsets.UTF_8));
+            }
+            if (buf.get(pos + i) != c) {
+                return false;
+            }
+        }
+        return buf.get(pos + length) == 0;
+    }
+
+    static boolean equals(ByteBuffer buf, int pos, byte[] name) {
+        if (pos < 0 || pos + name.length >= buf.limit()) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (buf.get(pos + i) != name[i]) {
+                return false;
+            }
+        }
+        return buf.get(pos + name.length) == 0;
+    }
+
+    /**
+     * SysV ELF hash of the string at <code>pos</code>.
+     */
+    static int elfHash(ByteBuffer buf, int pos) {
+        int h = 0;
+        for (byte b; (b = buf.get(pos)) != 0; pos++) {
+            h = elfHashStep(h, b);
+        }
+        return h;
+    }
+
+    static int elfHash(String name) {
+        int h = 0;
+        int length = name.length();
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            if (c >= 0x80) {
+                return elfHash(name.getBytes(StandardCharsets.UTF_8));
+            }
+            h = elfHashStep(h, (byte) c);
+        }
+        return h;
+    }
+
+    static int elfHash(byte[] name) {
+        int h = 0;
+        for (byte b : name) {
+            h = elfHashStep(h, b);
+        }
+        return h;
+    }
+
+    private static int elfHashStep(int h, byte b) {
+        h = (h << 4) + (b & 0xff);
+        int g = h & 0xf0000000;
+        if (g != 0) {
+            h ^= g >>> 24;
+        }
+        return h & ~g;
+    }
+}
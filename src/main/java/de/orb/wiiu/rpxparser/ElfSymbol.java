@@ -86,7 +86,21 @@ public class ElfSymbol {
         if (sectionIndex >= SHN_LORESERVE && sectionIndex <= SHN_HIRESERVE) {
             return Optional.empty();
         }
-        return Optional.ofNullable(reader.sections[sectionIndex]);
+        return reader.section(sectionIndex);
+    }
+
+    /**
+     * @return the raw section index, which may be one of the reserved indices.
+     */
+    public int sectionIndex() {
+        return sectionIndex;
+    }
+
+    /**
+     * Compares section indices, so no section name has to be decoded.
+     */
+    public boolean isInSection(ElfSection section) {
+        return sectionIndex == section.index();
     }
 
     @Override
@@ -0,0 +1,150 @@
+package de.orb.wiiu.rpxparser;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Resolves addresses to the <code>STT_FUNC</code>/<code>STT_OBJECT</code> symbol
+ * covering them. The symbol ranges are kept sorted in primitive arrays, a lookup
+ * is a binary search followed by a walk over the enclosing ranges.
+ * <p>
+ * If several symbols cover an address the innermost one wins, i.e. the one with
+ * the highest start address, then the shortest one and then the one with the
+ * lowest index.
+ */
+public class ElfSymbolAddressIndex {
+    private final ElfSymbolTable table;
+    private final long[] starts;
+    private final long[] ends;
+    private final int[] indices;
+    // the nearest previous range ending after the end of a range, or -1
+    private final int[] enclosing;
+
+    private ElfSymbolAddressIndex(ElfSymbolTable table, long[] starts, long[] ends, int[] indices) {
+        this.table = table;
+        this.starts = starts;
+        this.ends = ends;
+        this.indices = indices;
+        this.enclosing = new int[starts.length];
+        int[] stack = new int[starts.length];
+        int top = 0;
+        for (int i = 0; i < starts.length; i++) {
+            while (top > 0 && ends[stack[top - 1]] <= ends[i]) {
+                top--;
+            }
+            enclosing[i] = top > 0 ? stack[top - 1] : -1;
+            stack[top++] = i;
+        }
+    }
+
+    static ElfSymbolAddressIndex build(ElfSymbolTable table) {
+        // value (32 bit) in the upper half, symbol index in the lower half. The sign
+        // bit is flipped so that the signed sort orders the values unsigned.
+        long[] keys = new long[table.count()];
+        int count = 0;
+        ElfSymbolCursor cursor = table.cursor();
+        while (cursor.next()) {
+            byte type = cursor.type();
+            if ((type == ElfSymbol.STT_FUNC || type == ElfSymbol.STT_OBJECT) && cursor.size() > 0) {
+                keys[count++] = ((cursor.value() << 32) | cursor.index()) ^ Long.MIN_VALUE;
+            }
+        }
+        Arrays.sort(keys, 0, count);
+
+        long[] starts = new long[count];
+        long[] ends = new long[count];
+        int[] indices = new int[count];
+        for (int i = 0; i < count; i++) {
+            int index = (int) keys[i];
+            cursor.moveTo(index);
+            starts[i] = (keys[i] ^ Long.MIN_VALUE) >>> 32;
+            ends[i] = starts[i] + cursor.size();
+            indices[i] = index;
+        }
+        // symbols at the same address: the shortest, then the lowest index last, so
+        // that it is found first when walking backwards
+        for (int i = 1; i < count; i++) {
+            for (int j = i; j > 0 && starts[j - 1] == starts[j] && (ends[j - 1] < ends[j] || ends[j - 1] == ends[j] && indices[j - 1] < indices[j]); j--) {
+                swap(ends, j);
+                swap(indices, j);
+            }
+        }
+        return new ElfSymbolAddressIndex(table, starts, ends, indices);
+    }
+
+    private static void swap(long[] a, int i) {
+        long t = a[i];
+        a[i] = a[i - 1];
+        a[i - 1] = t;
+    }
+
+    private static void swap(int[] a, int i) {
+        int t = a[i];
+        a[i] = a[i - 1];
+        a[i - 1] = t;
+    }
+
+    public int count() {
+        return starts.length;
+    }
+
+    /**
+     * @return the index of the symbol covering the address or -1.
+     */
+    public int indexOf(long address) {
+        // the last range starting at or below the address
+        int low = 0;
+        int high = starts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= address) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return resolve(low - 1, address);
+    }
+
+    public Optional<ElfSymbol> symbolAt(long address) {
+        int index = indexOf(address);
+        return index < 0 ? Optional.empty() : Optional.of(table.symbol(index));
+    }
+
+    /**
+     * Resolves a batch of addresses in a single pass.
+     * 
+     * @param addresses addresses in ascending order.
+     * @param result receives the symbol index for each address, -1 if no symbol
+     *            covers it.
+     */
+    public void indicesOf(long[] addresses, int[] result) {
+        if (result.length < addresses.length) {
+            throw new IllegalArgumentException("result is smaller than addresses");
+        }
+        int pos = -1;
+        long last = Long.MIN_VALUE;
+        for (int i = 0; i < addresses.length; i++) {
+            long address = addresses[i];
+            if (address < last) {
+                throw new IllegalArgumentException("addresses are not sorted at " + i);
+            }
+            last = address;
+            while (pos + 1 < starts.length && starts[pos + 1] <= address) {
+                pos++;
+            }
+            result[i] = resolve(pos, address);
+        }
+    }
+
+    /**
+     * @param pos the last range starting at or below the address.
+     */
+    private int resolve(int pos, long address) {
+        // ranges between pos and its enclosing range end before the end of pos
+        while (pos >= 0 && ends[pos] <= address) {
+            pos = enclosing[pos];
+        }
+        return pos < 0 ? -1 : indices[pos];
+    }
+}
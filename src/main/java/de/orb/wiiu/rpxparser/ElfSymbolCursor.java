@@ -0,0 +1,143 @@
+package de.orb.wiiu.rpxparser;
+
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * A reusable view on the entries of an {@link ElfSymbolTable}. The fields of the
+ * current symbol are read directly from the section buffer, so iterating a table
+ * with a cursor does not allocate any objects.
+ * 
+ * <pre>
+ * ElfSymbolCursor cursor = symtab.cursor();
+ * while (cursor.next()) {
+ *     if (cursor.type() == ElfSymbol.STT_FUNC &amp;&amp; cursor.nameEquals("main")) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * 
+ * A cursor must not be shared between threads.
+ */
+public class ElfSymbolCursor {
+    private final ElfSymbolTable table;
+    private final ByteBuffer buf;
+    private final ByteBuffer strings;
+    private final int entrySize;
+    private final int count;
+    private int index = -1;
+    private int offset = -1;
+
+    ElfSymbolCursor(ElfSymbolTable table) {
+        this.table = table;
+        this.buf = table.getSectionBuffer();
+        this.strings = table.link().map(e -> e.getSectionBuffer()).orElse(null);
+        this.entrySize = (int) table.entrySize();
+        this.count = table.count();
+    }
+
+    /**
+     * Moves to the next symbol.
+     * 
+     * @return false if there are no more symbols.
+     */
+    public boolean next() {
+        if (index + 1 >= count) {
+            return false;
+        }
+        moveTo(index + 1);
+        return true;
+    }
+
+    public ElfSymbolCursor moveTo(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Symbol index " + index + " out of range [0, " + count + ")");
+        }
+        this.index = index;
+        this.offset = index * entrySize;
+        return this;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int index() {
+        return index;
+    }
+
+    private int offset() {
+        if (offset < 0) {
+            throw new NoSuchElementException("Cursor is not positioned on a symbol");
+        }
+        return offset;
+    }
+
+    public int nameIndex() {
+        return buf.getInt(offset());
+    }
+
+    public long value() {
+        return buf.getInt(offset() + 4) & 0xffffffffL;
+    }
+
+    public long size() {
+        return buf.getInt(offset() + 8) & 0xffffffffL;
+    }
+
+    public int info() {
+        return buf.get(offset() + 12) & 0xff;
+    }
+
+    public byte bind() {
+        return (byte) (info() >> 4);
+    }
+
+    public byte type() {
+        return (byte) (info() & 0xf);
+    }
+
+    public byte other() {
+        return buf.get(offset() + 13);
+    }
+
+    public int sectionIndex() {
+        return buf.getShort(offset() + 14) & 0xffff;
+    }
+
+    /**
+     * @return true if the symbol has a non empty name.
+     */
+    public boolean hasName() {
+        int nameIndex = nameIndex();
+        return strings != null && nameIndex >= 0 && nameIndex < strings.limit() && strings.get(nameIndex) != 0;
+    }
+
+    /**
+     * Compares the name of the current symbol without decoding it.
+     */
+    public boolean nameEquals(String name) {
+        return strings != null && ElfStrings.equals(strings, nameIndex(), name);
+    }
+
+    /**
+     * Compares the name of the current symbol with the given bytes (without the
+     * terminating NUL).
+     */
+    public boolean nameEquals(byte[] name) {
+        return strings != null && ElfStrings.equals(strings, nameIndex(), name);
+    }
+
+    public Optional<String> name() {
+        return symbol().name();
+    }
+
+    /**
+     * @return a new {@link ElfSymbol} for the current symbol.
+     */
+    public ElfSymbol symbol() {
+        offset();
+        return table.symbol(index);
+    }
+}
@@ -0,0 +1,137 @@
+package de.orb.wiiu.rpxparser;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.BitSet;
+
+/**
+ * Name to index lookup table for an {@link ElfSymbolTable}, using the layout of a
+ * SysV <code>.hash</code> section: <code>nbucket</code>, <code>nchain</code>,
+ * the buckets and the chains. Names are hashed and compared on the bytes of the
+ * string table, no symbol names are decoded.
+ */
+public class ElfSymbolHashIndex {
+    private static final int[] BUCKET_COUNTS = { 1, 3, 17, 37, 67, 97, 131, 197, 263, 521, 1031, 2053, 4099, 8209, 16411, 32771, 65537, 131101,
+            262147, 524309, 1048583 };
+
+    private final ElfSymbolTable table;
+    private final int[] buckets;
+    private final int[] chains;
+
+    private ElfSymbolHashIndex(ElfSymbolTable table, int[] buckets, int[] chains) {
+        this.table = table;
+        this.buckets = buckets;
+        this.chains = chains;
+    }
+
+    static ElfSymbolHashIndex build(ElfSymbolTable table) {
+        int count = table.count();
+        int nbucket = BUCKET_COUNTS[0];
+        for (int n : BUCKET_COUNTS) {
+            if (n > count / 2) {
+                break;
+            }
+            nbucket = n;
+        }
+        int[] buckets = new int[nbucket];
+        int[] chains = new int[count];
+
+        ElfSymbolCursor cursor = table.cursor();
+        ByteBuffer strings = table.link().map(ElfSection::getSectionBuffer).orElse(null);
+        if (strings != null) {
+            // Insert backwards so that the lowest index is found first.
+            for (int i = count - 1; i > 0; i--) {
+                cursor.moveTo(i);
+                if (!cursor.hasName()) {
+                    continue;
+                }
+                int bucket = Integer.remainderUnsigned(ElfStrings.elfHash(strings, cursor.nameIndex()), nbucket);
+                chains[i] = buckets[bucket];
+                buckets[bucket] = i;
+            }
+        }
+        return new ElfSymbolHashIndex(table, buckets, chains);
+    }
+
+    /**
+     * Reads an index in <code>.hash</code> section format which was created for
+     * the given table.
+     */
+    public static ElfSymbolHashIndex read(ElfSymbolTable table, ByteBuffer buf) throws ElfException {
+        if (buf.limit() < 8) {
+            throw new ElfException("Hash table does not match " + table);
+        }
+        int nbucket = buf.getInt(0);
+        int nchain = buf.getInt(4);
+        if (nbucket <= 0 || nchain != table.count() || buf.limit() < 8 + 4L * nbucket + 4L * nchain) {
+            throw new ElfException("Hash table does not match " + table);
+        }
+        int[] buckets = new int[nbucket];
+        int[] chains = new int[nchain];
+        for (int i = 0; i < nbucket; i++) {
+            buckets[i] = buf.getInt(8 + i * 4);
+        }
+        for (int i = 0; i < nchain; i++) {
+            chains[i] = buf.getInt(8 + (nbucket + i) * 4);
+        }
+        for (int i = 0; i < nbucket; i++) {
+            if (buckets[i] < 0 || buckets[i] >= nchain) {
+                throw new ElfException("Invalid hash bucket " + i);
+            }
+        }
+        for (int i = 0; i < nchain; i++) {
+            if (chains[i] < 0 || chains[i] >= nchain) {
+                throw new ElfException("Invalid hash chain " + i);
+            }
+        }
+        // every symbol is on at most one chain, so a revisited index is a loop
+        BitSet visited = new BitSet(nchain);
+        for (int bucket = 0; bucket < nbucket; bucket++) {
+            for (int i = buckets[bucket]; i != 0; i = chains[i]) {
+                if (visited.get(i)) {
+                    throw new ElfException("Hash chain of bucket " + bucket + " revisits symbol " + i);
+                }
+                visited.set(i);
+            }
+        }
+        return new ElfSymbolHashIndex(table, buckets, chains);
+    }
+
+    /**
+     * @return the index of the first symbol with the given name or -1.
+     */
+    public int indexOf(String name) {
+        ByteBuffer strings = table.link().map(ElfSection::getSectionBuffer).orElse(null);
+        if (strings == null) {
+            return -1;
+        }
+        ByteBuffer symbols = table.getSectionBuffer();
+        int entrySize = (int) table.entrySize();
+        int bucket = Integer.remainderUnsigned(ElfStrings.elfHash(name), buckets.length);
+        for (int i = buckets[bucket]; i != 0; i = chains[i]) {
+            if (ElfStrings.equals(strings, symbols.getInt(i * entrySize), name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the index in <code>.hash</code> section format using the byte order
+     * of the ELF file.
+     */
+    public ByteBuffer toHashSection() {
+        ByteOrder order = table.reader.endian();
+        ByteBuffer buf = ByteBuffer.allocate(8 + 4 * (buckets.length + chains.length)).order(order);
+        buf.putInt(buckets.length);
+        buf.putInt(chains.length);
+        for (int bucket : buckets) {
+            buf.putInt(bucket);
+        }
+        for (int chain : chains) {
+            buf.putInt(chain);
+        }
+        buf.flip();
+        return buf;
+    }
+}
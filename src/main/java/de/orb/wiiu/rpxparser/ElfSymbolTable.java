@@ -23,18 +23,89 @@ import java.util.stream.Stream;
 
 public class ElfSymbolTable extends ElfSection implements Iterable<ElfSymbol> {
 
-    ElfSymbolTable(ElfReader reader, int offset) {
-        super(reader, offset);
+    private volatile ElfSymbolHashIndex hashIndex;
+    private volatile ElfSymbolAddressIndex addressIndex;
+
+    ElfSymbolTable(ElfReader reader, int index, int offset) {
+        super(reader, index, offset);
     }
 
     public ElfSymbol symbol(int index) {
+        ElfParseListener listener = reader.parseListener;
+        if (listener != null) {
+            listener.onSymbolCreated(this);
+        }
         return new ElfSymbol(getSectionBuffer(), link().map(e -> (ElfStringTable) e), (int) (index * entrySize), reader);
     }
 
     public Optional<ElfSymbol> symbol(String name) {
-        return stream() //
-                .filter(n -> n.name().filter(s_name -> s_name.equals(name)).isPresent()) //
-                .findAny();
+        int index = hashIndex().indexOf(name);
+        return index < 0 ? Optional.empty() : Optional.of(symbol(index));
+    }
+
+    /**
+     * Returns the name lookup table of this symbol table. A <code>SHT_HASH</code>
+     * section linked to this table is used if present, otherwise the index is built
+     * on the first call.
+     */
+    public ElfSymbolHashIndex hashIndex() {
+        ElfSymbolHashIndex index = hashIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = hashIndex;
+                if (index == null) {
+                    index = readHashSection().orElseGet(() -> ElfSymbolHashIndex.build(this));
+                    hashIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the address lookup table of this symbol table, built on the first
+     * call.
+     */
+    public ElfSymbolAddressIndex addressIndex() {
+        ElfSymbolAddressIndex index = addressIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = addressIndex;
+                if (index == null) {
+                    index = ElfSymbolAddressIndex.build(this);
+                    addressIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Replaces the name lookup table, e.g. with one previously persisted via
+     * {@link ElfSymbolHashIndex#toHashSection()}.
+     */
+    public void setHashIndex(ElfSymbolHashIndex hashIndex) {
+        this.hashIndex = hashIndex;
+    }
+
+    private Optional<ElfSymbolHashIndex> readHashSection() {
+        return reader.sections(SHT_HASH).stream() //
+                .filter(s -> s.linkIndex == index) //
+                .findFirst() //
+                .flatMap(s -> {
+                    try {
+                        return Optional.of(ElfSymbolHashIndex.read(this, s.getSectionBuffer()));
+                    } catch (ElfException e) {
+                        return Optional.empty();
+                    }
+                });
+    }
+
+    /**
+     * @return a new cursor positioned before the first symbol.
+     */
+    public ElfSymbolCursor cursor() {
+        return new ElfSymbolCursor(this);
     }
 
     public Stream<ElfSymbol> stream() {
@@ -0,0 +1,114 @@
+package de.orb.wiiu.rpxparser;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Direct calls between the functions of the .text section, see
+ * {@link FunctionCallGraphBuilder}. Functions are numbered by ascending address.
+ * The edges are kept in compressed sparse row form: the edges of function
+ * <code>i</code> are <code>edgeStart(i)</code> (inclusive) to
+ * <code>edgeStart(i + 1)</code> (exclusive), in the order of their call sites.
+ * <p>
+ * A callee is either the index of a function or, if negative, the bitwise
+ * complement of an index into {@link #imports()}.
+ */
+public class FunctionCallGraph {
+    private final long[] addresses;
+    private final int[] sizes;
+    private final int[] edgeStarts;
+    private final int[] callees;
+    private final int[] callSites;
+    private final boolean[] links;
+    private final List<RPLImport> imports;
+
+    FunctionCallGraph(long[] addresses, int[] sizes, int[] edgeStarts, int[] callees, int[] callSites, boolean[] links, List<RPLImport> imports) {
+        this.addresses = addresses;
+        this.sizes = sizes;
+        this.edgeStarts = edgeStarts;
+        this.callees = callees;
+        this.callSites = callSites;
+        this.links = links;
+        this.imports = imports;
+    }
+
+    public int count() {
+        return addresses.length;
+    }
+
+    public long address(int function) {
+        return addresses[function];
+    }
+
+    public int size(int function) {
+        return sizes[function];
+    }
+
+    /**
+     * @return the index of the function starting at the address or -1.
+     */
+    public int indexOf(long address) {
+        int index = Arrays.binarySearch(addresses, address);
+        return index >= 0 ? index : -1;
+    }
+
+    public int edgeCount() {
+        return callees.length;
+    }
+
+    /**
+     * @return the first edge of the function, <code>edgeStart(count())</code> is
+     *         the total number of edges.
+     */
+    public int edgeStart(int function) {
+        return edgeStarts[function];
+    }
+
+    public int calleeCount(int function) {
+        return edgeStarts[function + 1] - edgeStarts[function];
+    }
+
+    public int callee(int edge) {
+        return callees[edge];
+    }
+
+    public long callSite(int edge) {
+        return callSites[edge] & 0xffffffffL;
+    }
+
+    /**
+     * @return true for <code>bl</code>, false for a tail call with <code>b</code>.
+     */
+    public boolean isCall(int edge) {
+        return links[edge];
+    }
+
+    public static boolean isImport(int callee) {
+        return callee < 0;
+    }
+
+    /**
+     * @return the imported function called by an import callee.
+     */
+    public RPLImport importOf(int callee) {
+        return imports.get(~callee);
+    }
+
+    public List<RPLImport> imports() {
+        return imports;
+    }
+
+    /**
+     * The raw row offsets, <code>count() + 1</code> entries. Must not be modified.
+     */
+    public int[] edgeStarts() {
+        return edgeStarts;
+    }
+
+    /**
+     * The raw callee of each edge. Must not be modified.
+     */
+    public int[] callees() {
+        return callees;
+    }
+}
@@ -0,0 +1,208 @@
+package de.orb.wiiu.rpxparser;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Builds the {@link FunctionCallGraph} of the .text section by decoding every
+ * <code>b</code>/<code>bl</code> instruction inside a function symbol. Branches
+ * patched by a <code>R_PPC_REL24</code> relocation take their target from the
+ * relocation, which resolves calls into import sections to the imported
+ * function. A <code>b</code> is only taken as a (tail) call if it jumps to the
+ * start of another function.
+ * <p>
+ * The functions are decoded in parallel directly on the section buffer, once to
+ * count and once to fill the edges, so no per-function objects are created.
+ */
+public class FunctionCallGraphBuilder {
+    private final ElfReader reader;
+
+    private long[] starts;
+    private long[] ends;
+    private long[] relocationSites;
+    private long[] relocationTargets;
+    private int[] relocationImports;
+
+    public FunctionCallGraphBuilder(ElfReader reader) {
+        this.reader = reader;
+    }
+
+    public FunctionCallGraph build() {
+        ElfSection text = reader.section(".text").orElse(null);
+        ElfSymbolTable symtab = reader.section(".symtab").filter(s -> s instanceof ElfSymbolTable).map(s -> (ElfSymbolTable) s).orElse(null);
+        if (text == null || symtab == null) {
+            return new FunctionCallGraph(new long[0], new int[0], new int[1], new int[0], new int[0], new boolean[0], Collections.emptyList());
+        }
+        readFunctions(symtab, text.index());
+        List<RPLImport> imports = readRelocations(symtab, text.index());
+
+        ByteBuffer buf = text.getSectionBuffer();
+        long textAddress = text.address();
+        int count = starts.length;
+        int[] edgeStarts = new int[count + 1];
+        IntStream.range(0, count).parallel().forEach(i -> edgeStarts[i + 1] = decode(buf, textAddress, i, null, null, null, 0));
+        for (int i = 0; i < count; i++) {
+            edgeStarts[i + 1] += edgeStarts[i];
+        }
+        int[] callees = new int[edgeStarts[count]];
+        int[] callSites = new int[callees.length];
+        boolean[] links = new boolean[callees.length];
+        IntStream.range(0, count).parallel().forEach(i -> decode(buf, textAddress, i, callees, callSites, links, edgeStarts[i]));
+
+        int[] sizes = new int[count];
+        for (int i = 0; i < count; i++) {
+            sizes[i] = (int) (ends[i] - starts[i]);
+        }
+        return new FunctionCallGraph(starts, sizes, edgeStarts, callees, callSites, links, imports);
+    }
+
+    /**
+     * Collects the .text functions sorted by address. Of several symbols at the
+     * same address only the first is kept.
+     */
+    private void readFunctions(ElfSymbolTable symtab, int textIndex) {
+        // address in the upper half, symbol index in the lower half. The sign bit is
+        // flipped so that the signed sort orders the addresses unsigned.
+        long[] keys = new long[symtab.count()];
+        long[] sizes = new long[symtab.count()];
+        int count = 0;
+        ElfSymbolCursor cursor = symtab.cursor();
+        while (cursor.next()) {
+            if (RPXFile.isTextFunction(cursor, textIndex)) {
+                sizes[cursor.index()] = cursor.size();
+                keys[count++] = ((cursor.value() << 32) | cursor.index()) ^ Long.MIN_VALUE;
+            }
+        }
+        Arrays.sort(keys, 0, count);
+        starts = new long[count];
+        ends = new long[count];
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            long start = (keys[i] ^ Long.MIN_VALUE) >>> 32;
+            if (unique > 0 && starts[unique - 1] == start) {
+                continue;
+            }
+            starts[unique] = start;
+            ends[unique] = start + sizes[(int) keys[i]];
+            unique++;
+        }
+        starts = Arrays.copyOf(starts, unique);
+        ends = Arrays.copyOf(ends, unique);
+    }
+
+    /**
+     * Collects the <code>R_PPC_REL24</code> relocations of the section, sorted by
+     * address, with either the target address or the import they refer to.
+     */
+    private List<RPLImport> readRelocations(ElfSymbolTable symtab, int textIndex) {
+        List<ElfRelocationColumns> tables = new ArrayList<>();
+        reader.sections() //
+                .filter(s -> s instanceof ElfRelocationTable && !(s instanceof ElfImportsTable) && s.info() == textIndex && s.linkIndex == symtab.index()) //
+                .forEach(s -> tables.add(((ElfRelocationTable) s).columns()));
+        int total = 0;
+        for (ElfRelocationColumns columns : tables) {
+            total += columns.count();
+        }
+        long[] keys = new long[total];
+        long[] targets = new long[total];
+        int[] importSlots = new int[total];
+        int count = 0;
+        List<RPLImport> imports = new ArrayList<>();
+        Map<Integer, Integer> slots = new HashMap<>();
+        ElfSymbolCursor cursor = symtab.cursor();
+        for (ElfRelocationColumns columns : tables) {
+            for (int i = 0; i < columns.count(); i++) {
+                int symbol = columns.symbol(i);
+                if (columns.type(i) != ElfRelocation.R_PPC_REL24 || symbol >= cursor.count()) {
+                    continue;
+                }
+                cursor.moveTo(symbol);
+                ElfSection section = reader.section(cursor.sectionIndex()).orElse(null);
+                if (section instanceof ElfImportsTable) {
+                    Integer slot = slots.get(symbol);
+                    if (slot == null) {
+                        slot = imports.size();
+                        slots.put(symbol, slot);
+                        imports.add(new RPLImport(cursor.name().orElse(""), ((ElfImportsTable) section).rplname()));
+                    }
+                    importSlots[count] = slot;
+                } else {
+                    importSlots[count] = -1;
+                    targets[count] = (cursor.value() + columns.addend(i)) & 0xffffffffL;
+                }
+                keys[count] = ((columns.offset(i) << 32) | count) ^ Long.MIN_VALUE;
+                count++;
+            }
+        }
+        Arrays.sort(keys, 0, count);
+        relocationSites = new long[count];
+        relocationTargets = new long[count];
+        relocationImports = new int[count];
+        for (int i = 0; i < count; i++) {
+            int index = (int) keys[i];
+            relocationSites[i] = (keys[i] ^ Long.MIN_VALUE) >>> 32;
+            relocationTargets[i] = targets[index];
+            relocationImports[i] = importSlots[index];
+        }
+        return Collections.unmodifiableList(imports);
+    }
+
+    /**
+     * Decodes the branches of one function. Without output arrays the edges are
+     * only counted.
+     *
+     * @return the number of edges.
+     */
+    private int decode(ByteBuffer buf, long textAddress, int function, int[] callees, int[] callSites, boolean[] links, int pos) {
+        long start = starts[function] - textAddress;
+        long end = Math.min(ends[function] - textAddress, buf.limit());
+        if (start < 0) {
+            return 0;
+        }
+        int edges = 0;
+        for (long offset = start; offset + 4 <= end; offset += 4) {
+            int insn = buf.getInt((int) offset);
+            if (!PPCDecoder.isBranch(insn)) {
+                continue;
+            }
+            long site = textAddress + offset;
+            boolean link = PPCDecoder.isLink(insn);
+            int callee;
+            int relocation = Arrays.binarySearch(relocationSites, site);
+            if (relocation >= 0 && relocationImports[relocation] >= 0) {
+                callee = ~relocationImports[relocation];
+            } else {
+                long target = relocation >= 0 ? relocationTargets[relocation] : PPCDecoder.branchTarget(insn, site);
+                callee = link ? functionAt(target) : Arrays.binarySearch(starts, target);
+                if (callee < 0 || (!link && callee == function)) {
+                    continue;
+                }
+            }
+            if (callees != null) {
+                callees[pos + edges] = callee;
+                callSites[pos + edges] = (int) site;
+                links[pos + edges] = link;
+            }
+            edges++;
+        }
+        return edges;
+    }
+
+    /**
+     * @return the index of the function containing the address or -1.
+     */
+    private int functionAt(long address) {
+        int index = Arrays.binarySearch(starts, address);
+        if (index >= 0) {
+            return index;
+        }
+        index = -index - 2;
+        return index >= 0 && address < ends[index] ? index : -1;
+    }
+}
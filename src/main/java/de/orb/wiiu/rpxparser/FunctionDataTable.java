@@ -0,0 +1,60 @@
+package de.orb.wiiu.rpxparser;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The bodies of several functions copied into one buffer. Entry <code>i</code>
+ * starts at <code>offset(i)</code> in {@link #data()} and is
+ * <code>length(i)</code> bytes long. Functions which could not be extracted have
+ * the offset -1.
+ */
+public class FunctionDataTable {
+    private final ByteBuffer data;
+    private final long[] addresses;
+    private final int[] offsets;
+    private final int[] lengths;
+
+    FunctionDataTable(ByteBuffer data, long[] addresses, int[] offsets, int[] lengths) {
+        this.data = data;
+        this.addresses = addresses;
+        this.offsets = offsets;
+        this.lengths = lengths;
+    }
+
+    public int count() {
+        return offsets.length;
+    }
+
+    /**
+     * @return the buffer holding the function bodies, positioned at the end of
+     *         the written data.
+     */
+    public ByteBuffer data() {
+        return data;
+    }
+
+    public long address(int index) {
+        return addresses[index];
+    }
+
+    public int offset(int index) {
+        return offsets[index];
+    }
+
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    /**
+     * @return a view on the body of the given function.
+     */
+    public ByteBuffer slice(int index) {
+        if (offsets[index] < 0) {
+            throw new IllegalStateException("Function " + index + " was not extracted");
+        }
+        ByteBuffer buf = data.duplicate();
+        buf.limit(offsets[index] + lengths[index]);
+        buf.position(offsets[index]);
+        return buf.slice();
+    }
+}
@@ -0,0 +1,164 @@
+package de.orb.wiiu.rpxparser;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Computes 64 bit FNV-1a hashes of all functions in the .text section, once over
+ * the raw bytes and once with the fields which are patched by relocations masked
+ * out. The masked hash stays the same when a function only moved or references
+ * moved targets, which makes it usable to match functions across versions.
+ * <p>
+ * The functions are hashed in parallel directly on the section buffer, no
+ * function body is copied.
+ */
+public class FunctionFingerprinter {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final ElfReader reader;
+
+    public FunctionFingerprinter(ElfReader reader) {
+        this.reader = reader;
+    }
+
+    public FunctionFingerprints fingerprint() {
+        ElfSection text = reader.section(".text").orElse(null);
+        ElfSymbolTable symtab = reader.section(".symtab").filter(s -> s instanceof ElfSymbolTable).map(s -> (ElfSymbolTable) s).orElse(null);
+        if (text == null || symtab == null) {
+            return new FunctionFingerprints(new long[0], new int[0], new long[0], new long[0]);
+        }
+        int textIndex = text.index();
+
+        ElfSymbolCursor cursor = symtab.cursor();
+        int count = 0;
+        while (cursor.next()) {
+            if (RPXFile.isTextFunction(cursor, textIndex)) {
+                count++;
+            }
+        }
+        long[] addresses = new long[count];
+        int[] sizes = new int[count];
+        cursor = symtab.cursor();
+        for (int i = 0; cursor.next();) {
+            if (RPXFile.isTextFunction(cursor, textIndex)) {
+                addresses[i] = cursor.value();
+                sizes[i] = (int) cursor.size();
+                i++;
+            }
+        }
+
+        long[] relocations = relocations(textIndex);
+        ByteBuffer buf = text.getSectionBuffer();
+        long textAddress = text.address();
+        long[] hashes = new long[count];
+        long[] maskedHashes = new long[count];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            long start = addresses[i] - textAddress;
+            if (start < 0 || start + sizes[i] > buf.limit()) {
+                return;
+            }
+            hashes[i] = hash(buf, (int) start, sizes[i], addresses[i], null);
+            maskedHashes[i] = hash(buf, (int) start, sizes[i], addresses[i], relocations);
+        });
+        return new FunctionFingerprints(addresses, sizes, hashes, maskedHashes);
+    }
+
+    /**
+     * @return the relocations applied to the section, sorted, with the address in
+     *         the upper and the type in the lower 32 bit. The sign bit is flipped
+     *         so that the signed order matches the unsigned address order, see
+     *         {@link #key(long)}.
+     */
+    private long[] relocations(int sectionIndex) {
+        long[][] tables = reader.sections() //
+                .filter(s -> s instanceof ElfRelocationTable && !(s instanceof ElfImportsTable) && s.info() == sectionIndex) //
+                .map(s -> {
+                    ElfRelocationColumns columns = ((ElfRelocationTable) s).columns();
+                    long[] entries = new long[columns.count()];
+                    for (int i = 0; i < entries.length; i++) {
+                        entries[i] = key(columns.offset(i)) | columns.type(i);
+                    }
+                    return entries;
+                }).toArray(long[][]::new);
+        long[] result = new long[Arrays.stream(tables).mapToInt(t -> t.length).sum()];
+        int pos = 0;
+        for (long[] table : tables) {
+            System.arraycopy(table, 0, result, pos, table.length);
+            pos += table.length;
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static long hash(ByteBuffer buf, int start, int size, long address, long[] relocations) {
+        int reloc = relocations == null ? -1 : firstRelocation(relocations, address);
+        long end = address + size;
+        long hash = FNV_OFFSET_BASIS;
+        int pos = 0;
+        for (; pos + 4 <= size; pos += 4) {
+            int word = buf.getInt(start + pos);
+            if (reloc >= 0) {
+                long wordAddress = address + pos;
+                while (reloc < relocations.length && address(relocations[reloc]) < wordAddress + 4 && address(relocations[reloc]) < end) {
+                    long offset = address(relocations[reloc]);
+                    word &= ~relocationMask((int) relocations[reloc], (int) (offset - wordAddress));
+                    reloc++;
+                }
+            }
+            hash = (hash ^ ((word >>> 24) & 0xff)) * FNV_PRIME;
+            hash = (hash ^ ((word >>> 16) & 0xff)) * FNV_PRIME;
+            hash = (hash ^ ((word >>> 8) & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (word & 0xff)) * FNV_PRIME;
+        }
+        for (; pos < size; pos++) {
+            hash = (hash ^ (buf.get(start + pos) & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static int firstRelocation(long[] relocations, long address) {
+        int pos = Arrays.binarySearch(relocations, key(address));
+        return pos < 0 ? -pos - 1 : pos;
+    }
+
+    private static long key(long address) {
+        return (address << 32) ^ Long.MIN_VALUE;
+    }
+
+    private static long address(long relocation) {
+        return (relocation ^ Long.MIN_VALUE) >>> 32;
+    }
+
+    /**
+     * @param offsetInWord the byte offset of the relocation inside the
+     *            instruction word.
+     * @return the bits of the (big-endian) word which are written by the
+     *         relocation.
+     */
+    static int relocationMask(int type, int offsetInWord) {
+        switch (type) {
+        case ElfRelocation.R_PPC_ADDR16:
+        case ElfRelocation.R_PPC_ADDR16_LO:
+        case ElfRelocation.R_PPC_ADDR16_HI:
+        case ElfRelocation.R_PPC_ADDR16_HA:
+        case ElfRelocation.R_PPC_GHS_REL16_HA:
+        case ElfRelocation.R_PPC_GHS_REL16_HI:
+        case ElfRelocation.R_PPC_GHS_REL16_LO:
+            return offsetInWord >= 2 ? 0x0000FFFF : 0xFFFF0000;
+        case ElfRelocation.R_PPC_ADDR24:
+        case ElfRelocation.R_PPC_REL24:
+            return 0x03FFFFFC;
+        case ElfRelocation.R_PPC_ADDR14:
+        case ElfRelocation.R_PPC_REL14:
+            return 0x0000FFFC;
+        case ElfRelocation.R_PPC_EMB_SDA21:
+            return 0x001FFFFF;
+        case ElfRelocation.R_PPC_NONE:
+            return 0;
+        default:
+            return 0xFFFFFFFF;
+        }
+    }
+}
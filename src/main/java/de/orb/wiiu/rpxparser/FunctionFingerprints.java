@@ -0,0 +1,46 @@
+package de.orb.wiiu.rpxparser;
+
+/**
+ * Hashes of the functions of a file, see {@link FunctionFingerprinter}. Entry
+ * <code>i</code> describes the function at <code>address(i)</code>.
+ */
+public class FunctionFingerprints {
+    private final long[] addresses;
+    private final int[] sizes;
+    private final long[] hashes;
+    private final long[] maskedHashes;
+
+    FunctionFingerprints(long[] addresses, int[] sizes, long[] hashes, long[] maskedHashes) {
+        this.addresses = addresses;
+        this.sizes = sizes;
+        this.hashes = hashes;
+        this.maskedHashes = maskedHashes;
+    }
+
+    public int count() {
+        return addresses.length;
+    }
+
+    public long address(int index) {
+        return addresses[index];
+    }
+
+    public int size(int index) {
+        return sizes[index];
+    }
+
+    /**
+     * @return the hash over the raw bytes of the function.
+     */
+    public long hash(int index) {
+        return hashes[index];
+    }
+
+    /**
+     * @return the hash over the bytes of the function with all instruction fields
+     *         patched by relocations set to zero.
+     */
+    public long maskedHash(int index) {
+        return maskedHashes[index];
+    }
+}
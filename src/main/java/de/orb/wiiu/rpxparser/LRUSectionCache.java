@@ -0,0 +1,99 @@
+package de.orb.wiiu.rpxparser;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link ElfSectionCache} which evicts the least recently used sections once the
+ * inflated bytes exceed the given budget. One instance can be shared by many
+ * {@link ElfReader}s.
+ */
+public class LRUSectionCache implements ElfSectionCache {
+    private final LinkedHashMap<ElfSection, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxSize;
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public LRUSectionCache(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize < 0");
+        }
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public synchronized ByteBuffer get(ElfSection section) {
+        ByteBuffer buffer = entries.get(section);
+        if (buffer == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return buffer;
+    }
+
+    @Override
+    public synchronized void put(ElfSection section, ByteBuffer buffer) {
+        ByteBuffer old = entries.put(section, buffer);
+        if (old != null) {
+            size -= old.capacity();
+        }
+        size += buffer.capacity();
+        trimToSize();
+    }
+
+    @Override
+    public synchronized void remove(ElfSection section) {
+        ByteBuffer old = entries.remove(section);
+        if (old != null) {
+            size -= old.capacity();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<ElfSection, ByteBuffer>> it = entries.entrySet().iterator();
+        while (size > maxSize && it.hasNext()) {
+            size -= it.next().getValue().capacity();
+            it.remove();
+            evictionCount++;
+        }
+    }
+
+    public long maxSize() {
+        return maxSize;
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized int count() {
+        return entries.size();
+    }
+
+    public synchronized long hitCount() {
+        return hitCount;
+    }
+
+    public synchronized long missCount() {
+        return missCount;
+    }
+
+    public synchronized long evictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("LRUSectionCache[size=%d,maxSize=%d,hits=%d,misses=%d,evictions=%d]", size, maxSize, hitCount, missCount, evictionCount);
+    }
+}
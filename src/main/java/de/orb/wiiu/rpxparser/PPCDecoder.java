@@ -0,0 +1,241 @@
+package de.orb.wiiu.rpxparser;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes 32 bit PowerPC instructions as used by the Espresso (and Gekko/Broadway)
+ * CPU, including the paired single extension. All methods work on the raw
+ * instruction word and do not allocate, mnemonics are looked up in static tables
+ * indexed by the primary and extended opcode.
+ * <p>
+ * Overflow (<code>o</code>) and record (<code>.</code>) variants are reported with
+ * the mnemonic of the base instruction, see {@link #isRecord(int)}.
+ */
+public final class PPCDecoder {
+    private static final String[] PRIMARY = new String[64];
+    private static final String[] OP4 = new String[1024];
+    private static final String[] OP4_A = new String[32];
+    private static final String[] OP19 = new String[1024];
+    private static final String[] OP31 = new String[1024];
+    private static final String[] OP59 = new String[32];
+    private static final String[] OP63 = new String[1024];
+    private static final String[] OP63_A = new String[32];
+
+    static {
+        put(PRIMARY, "twi", 3, "mulli", 7, "subfic", 8, "cmpli", 10, "cmpi", 11, "addic", 12, "addic.", 13, "addi", 14, "addis", 15, "bc", 16, "sc", 17,
+                "b", 18, "rlwimi", 20, "rlwinm", 21, "rlwnm", 23, "ori", 24, "oris", 25, "xori", 26, "xoris", 27, "andi.", 28, "andis.", 29, "lwz", 32,
+                "lwzu", 33, "lbz", 34, "lbzu", 35, "stw", 36, "stwu", 37, "stb", 38, "stbu", 39, "lhz", 40, "lhzu", 41, "lha", 42, "lhau", 43, "sth", 44,
+                "sthu", 45, "lmw", 46, "stmw", 47, "lfs", 48, "lfsu", 49, "lfd", 50, "lfdu", 51, "stfs", 52, "stfsu", 53, "stfd", 54, "stfdu", 55, "psq_l", 56,
+                "psq_lu", 57, "psq_st", 60, "psq_stu", 61);
+
+        put(OP4, "ps_cmpu0", 0, "ps_cmpo0", 32, "ps_neg", 40, "ps_cmpu1", 64, "ps_mr", 72, "ps_cmpo1", 96, "ps_nabs", 136, "ps_abs", 264, "ps_merge00", 528,
+                "ps_merge01", 560, "ps_merge10", 592, "ps_merge11", 624, "dcbz_l", 1014);
+        // the indexed paired single loads and stores only use 6 bits of the extended opcode
+        for (int i = 0; i < 1024; i += 64) {
+            put(OP4, "psq_lx", i + 6, "psq_stx", i + 7, "psq_lux", i + 38, "psq_stux", i + 39);
+        }
+        put(OP4_A, "ps_sum0", 10, "ps_sum1", 11, "ps_muls0", 12, "ps_muls1", 13, "ps_madds0", 14, "ps_madds1", 15, "ps_div", 18, "ps_sub", 20, "ps_add", 21,
+                "ps_sel", 23, "ps_res", 24, "ps_mul", 25, "ps_rsqrte", 26, "ps_msub", 28, "ps_madd", 29, "ps_nmsub", 30, "ps_nmadd", 31);
+
+        put(OP19, "mcrf", 0, "bclr", 16, "crnor", 33, "rfi", 50, "crandc", 129, "isync", 150, "crxor", 193, "crnand", 225, "crand", 257, "creqv", 289,
+                "crorc", 417, "cror", 449, "bcctr", 528);
+
+        put(OP31, "cmp", 0, "tw", 4, "mulhwu", 11, "mfcr", 19, "lwarx", 20, "lwzx", 23, "slw", 24, "cntlzw", 26, "and", 28, "cmpl", 32, "dcbst", 54,
+                "lwzux", 55, "andc", 60, "mulhw", 75, "mfmsr", 83, "dcbf", 86, "lbzx", 87, "lbzux", 119, "nor", 124, "mtcrf", 144, "mtmsr", 146, "stwcx.", 150,
+                "stwx", 151, "stwux", 183, "mtsr", 210, "stbx", 215, "mtsrin", 242, "dcbtst", 246, "stbux", 247, "dcbt", 278, "lhzx", 279, "eqv", 284,
+                "tlbie", 306, "eciwx", 310, "lhzux", 311, "xor", 316, "mfspr", 339, "lhax", 343, "mftb", 371, "lhaux", 375, "sthx", 407, "orc", 412,
+                "ecowx", 438, "sthux", 439, "or", 444, "mtspr", 467, "dcbi", 470, "nand", 476, "mcrxr", 512, "lswx", 533, "lwbrx", 534, "lfsx", 535, "srw", 536,
+                "tlbsync", 566, "lfsux", 567, "mfsr", 595, "lswi", 597, "sync", 598, "lfdx", 599, "lfdux", 631, "mfsrin", 659, "stswx", 661, "stwbrx", 662,
+                "stfsx", 663, "stfsux", 695, "stswi", 725, "stfdx", 727, "stfdux", 759, "lhbrx", 790, "sraw", 792, "srawi", 824, "eieio", 854, "sthbrx", 918,
+                "extsh", 922, "extsb", 954, "icbi", 982, "stfiwx", 983, "dcbz", 1014);
+        // XO-form arithmetic, bit 9 of the extended opcode is the OE bit
+        put(OP31, "subfc", 8, "addc", 10, "subf", 40, "neg", 104, "subfe", 136, "adde", 138, "subfze", 200, "addze", 202, "subfme", 232, "addme", 234,
+                "mullw", 235, "add", 266, "divwu", 459, "divw", 491);
+        for (int xo : new int[] { 8, 10, 40, 104, 136, 138, 200, 202, 232, 234, 235, 266, 459, 491 }) {
+            OP31[xo | 512] = OP31[xo];
+        }
+
+        put(OP59, "fdivs", 18, "fsubs", 20, "fadds", 21, "fres", 24, "fmuls", 25, "fmsubs", 28, "fmadds", 29, "fnmsubs", 30, "fnmadds", 31);
+
+        put(OP63, "fcmpu", 0, "frsp", 12, "fctiw", 14, "fctiwz", 15, "fcmpo", 32, "mtfsb1", 38, "fneg", 40, "mcrfs", 64, "mtfsb0", 70, "fmr", 72,
+                "mtfsfi", 134, "fnabs", 136, "fabs", 264, "mffs", 583, "mtfsf", 711);
+        put(OP63_A, "fdiv", 18, "fsub", 20, "fadd", 21, "fsel", 23, "fmul", 25, "frsqrte", 26, "fmsub", 28, "fmadd", 29, "fnmsub", 30, "fnmadd", 31);
+    }
+
+    private static void put(String[] table, Object... entries) {
+        for (int i = 0; i < entries.length; i += 2) {
+            table[(Integer) entries[i + 1]] = (String) entries[i];
+        }
+    }
+
+    private PPCDecoder() {
+    }
+
+    /**
+     * Reads the instruction at <code>offset</code>, the buffer has to be big endian.
+     */
+    public static int word(ByteBuffer buf, int offset) {
+        return buf.getInt(offset);
+    }
+
+    public static int primaryOpcode(int insn) {
+        return insn >>> 26;
+    }
+
+    /**
+     * @return the 10 bit extended opcode of X/XL/XFX-form instructions.
+     */
+    public static int extendedOpcode(int insn) {
+        return (insn >>> 1) & 0x3ff;
+    }
+
+    /**
+     * @return the mnemonic or null if the instruction is not valid on Espresso.
+     */
+    public static String mnemonic(int insn) {
+        switch (primaryOpcode(insn)) {
+        case 4: {
+            String result = OP4[extendedOpcode(insn)];
+            return result != null ? result : OP4_A[(insn >>> 1) & 0x1f];
+        }
+        case 19:
+            return OP19[extendedOpcode(insn)];
+        case 31:
+            return OP31[extendedOpcode(insn)];
+        case 59:
+            return OP59[(insn >>> 1) & 0x1f];
+        case 63: {
+            String result = OP63_A[(insn >>> 1) & 0x1f];
+            return result != null ? result : OP63[extendedOpcode(insn)];
+        }
+        default:
+            return PRIMARY[primaryOpcode(insn)];
+        }
+    }
+
+    public static boolean isValid(int insn) {
+        return mnemonic(insn) != null;
+    }
+
+    /**
+     * @return true for <code>b</code>, <code>ba</code>, <code>bl</code> and
+     *         <code>bla</code>.
+     */
+    public static boolean isBranch(int insn) {
+        return primaryOpcode(insn) == 18;
+    }
+
+    /**
+     * @return true for <code>bc</code> and its variants.
+     */
+    public static boolean isConditionalBranch(int insn) {
+        return primaryOpcode(insn) == 16;
+    }
+
+    /**
+     * @return true for <code>bclr</code> (e.g. <code>blr</code>) and
+     *         <code>bcctr</code> (e.g. <code>bctrl</code>).
+     */
+    public static boolean isIndirectBranch(int insn) {
+        if (primaryOpcode(insn) != 19) {
+            return false;
+        }
+        int xo = extendedOpcode(insn);
+        return xo == 16 || xo == 528;
+    }
+
+    /**
+     * @return true if the LK bit of a branch is set, i.e. it is a call.
+     */
+    public static boolean isLink(int insn) {
+        return (insn & 1) != 0;
+    }
+
+    /**
+     * @return true if the AA bit of a direct branch is set.
+     */
+    public static boolean isAbsolute(int insn) {
+        return (insn & 2) != 0;
+    }
+
+    /**
+     * @return true for <code>bl</code> and <code>bla</code>.
+     */
+    public static boolean isCall(int insn) {
+        return isBranch(insn) && isLink(insn);
+    }
+
+    /**
+     * @return the target of a <code>b</code>/<code>bc</code> instruction at
+     *         <code>address</code>, as unsigned 32 bit value.
+     */
+    public static long branchTarget(int insn, long address) {
+        int displacement = isBranch(insn) ? (insn << 6) >> 6 & ~3 : (short) (insn & 0xfffc);
+        return ((isAbsolute(insn) ? 0 : address) + displacement) & 0xffffffffL;
+    }
+
+    /**
+     * @return true if the Rc bit of an instruction with a record form is set.
+     */
+    public static boolean isRecord(int insn) {
+        switch (primaryOpcode(insn)) {
+        case 4:
+        case 31:
+        case 59:
+        case 63:
+        case 20:
+        case 21:
+        case 23:
+            return (insn & 1) != 0;
+        default:
+            return false;
+        }
+    }
+
+    public static int rD(int insn) {
+        return (insn >>> 21) & 0x1f;
+    }
+
+    public static int rS(int insn) {
+        return rD(insn);
+    }
+
+    public static int rA(int insn) {
+        return (insn >>> 16) & 0x1f;
+    }
+
+    public static int rB(int insn) {
+        return (insn >>> 11) & 0x1f;
+    }
+
+    public static int simm(int insn) {
+        return (short) insn;
+    }
+
+    public static int uimm(int insn) {
+        return insn & 0xffff;
+    }
+
+    /**
+     * @return the BO field of a conditional branch.
+     */
+    public static int bo(int insn) {
+        return rD(insn);
+    }
+
+    /**
+     * @return the BI field of a conditional branch.
+     */
+    public static int bi(int insn) {
+        return rA(insn);
+    }
+
+    /**
+     * @return the special purpose register of <code>mfspr</code>/<code>mtspr</code>,
+     *         whose two halves are swapped in the instruction.
+     */
+    public static int spr(int insn) {
+        int field = (insn >>> 11) & 0x3ff;
+        return ((field & 0x1f) << 5) | (field >>> 5);
+    }
+}
@@ -0,0 +1,95 @@
+package de.orb.wiiu.rpxparser;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Collects the imported symbols referenced by the relocations of a file.
+ * <p>
+ * The relocation entries are scanned directly in the section buffers and only
+ * the referenced symbol indices are recorded. Every referenced symbol is then
+ * looked at once, without creating {@link ElfRelocation} or {@link ElfSymbol}
+ * objects.
+ */
+public class RPLImportResolver {
+    private final ElfReader reader;
+
+    public RPLImportResolver(ElfReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Passes every imported symbol which is referenced by a relocation to the
+     * consumer, once per RPL and name even if several symbol table entries refer
+     * to it.
+     */
+    public void forEach(Consumer<RPLImport> consumer) {
+        Set<RPLImport> seen = new HashSet<>();
+        for (Map.Entry<ElfSymbolTable, BitSet> entry : referencedSymbols().entrySet()) {
+            ElfSymbolTable symtab = entry.getKey();
+            BitSet referenced = entry.getValue();
+            ElfStringTable strtab = (ElfStringTable) symtab.link().orElse(null);
+            ElfSymbolCursor cursor = symtab.cursor();
+            int count = cursor.count();
+            for (int i = referenced.nextSetBit(0); i >= 0 && i < count; i = referenced.nextSetBit(i + 1)) {
+                cursor.moveTo(i);
+                int sectionIndex = cursor.sectionIndex();
+                if (sectionIndex >= ElfSymbol.SHN_LORESERVE || sectionIndex >= reader.sections.length) {
+                    continue;
+                }
+                ElfSection section = reader.sections[sectionIndex];
+                if (!(section instanceof ElfImportsTable)) {
+                    continue;
+                }
+                if (strtab == null) {
+                    throw symtab.failure("Symbol table has no string table", null);
+                }
+                RPLImport rplImport = new RPLImport(strtab.string(cursor.nameIndex()), ((ElfImportsTable) section).rplname());
+                if (seen.add(rplImport)) {
+                    consumer.accept(rplImport);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the distinct imports grouped by the name of the RPL.
+     */
+    public Map<String, List<RPLImport>> resolve() {
+        Map<String, List<RPLImport>> result = new LinkedHashMap<>();
+        forEach(rplImport -> result.computeIfAbsent(rplImport.getRplName(), k -> new ArrayList<>()).add(rplImport));
+        return Collections.unmodifiableMap(result);
+    }
+
+    private Map<ElfSymbolTable, BitSet> referencedSymbols() {
+        Map<ElfSymbolTable, BitSet> result = new IdentityHashMap<>();
+        reader.sections() //
+                .filter(section -> section instanceof ElfRelocationTable && !(section instanceof ElfImportsTable)) //
+                .forEach(section -> {
+                    ElfSection link = section.link().orElse(null);
+                    if (!(link instanceof ElfSymbolTable)) {
+                        return;
+                    }
+                    BitSet referenced = result.computeIfAbsent((ElfSymbolTable) link, k -> new BitSet(k.count()));
+                    ByteBuffer buf = section.getSectionBuffer();
+                    int entrySize = (int) section.entrySize();
+                    int count = section.count();
+                    for (int i = 0; i < count; i++) {
+                        int info = buf.getInt(i * entrySize + 4);
+                        if ((info & 0xFF) != ElfRelocation.R_PPC_NONE) {
+                            referenced.set(info >>> 8);
+                        }
+                    }
+                });
+        return result;
+    }
+}
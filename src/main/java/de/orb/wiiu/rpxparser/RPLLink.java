@@ -0,0 +1,15 @@
+package de.orb.wiiu.rpxparser;
+
+import lombok.Data;
+
+/**
+ * An import of <code>importer</code> which is satisfied by an export of
+ * <code>exporter</code>.
+ */
+@Data
+public class RPLLink {
+    private final String importer;
+    private final RPLImport rplImport;
+    private final String exporter;
+    private final ElfExport export;
+}
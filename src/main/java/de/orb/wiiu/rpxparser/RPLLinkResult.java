@@ -0,0 +1,16 @@
+package de.orb.wiiu.rpxparser;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.Data;
+
+/**
+ * Result of {@link RPLLinker#link(Map)}, both maps are keyed by the name of the
+ * importing module.
+ */
+@Data
+public class RPLLinkResult {
+    private final Map<String, List<RPLLink>> links;
+    private final Map<String, List<RPLImport>> unresolved;
+}
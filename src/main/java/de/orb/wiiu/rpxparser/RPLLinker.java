@@ -0,0 +1,97 @@
+package de.orb.wiiu.rpxparser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the imports of a set of modules (a RPX and the RPLs it loads) against
+ * their exports.
+ * <p>
+ * All exports are put into one hash index keyed by module and symbol name, then
+ * the imports of every module are looked up in a single pass. Both steps run in
+ * parallel over the modules.
+ */
+public class RPLLinker {
+
+    private RPLLinker() {
+    }
+
+    /**
+     * @param modules the files by module name, e.g. "coreinit" or "coreinit.rpl".
+     *            The names have to be distinct after {@link #moduleName(String)},
+     *            otherwise the exporter of a symbol would be ambiguous.
+     * @throws IllegalArgumentException if two names denote the same module.
+     */
+    public static RPLLinkResult link(Map<String, RPXFile> modules) {
+        Map<String, String> names = new HashMap<>();
+        for (String name : modules.keySet()) {
+            String other = names.put(moduleName(name), name);
+            if (other != null) {
+                throw new IllegalArgumentException("\"" + other + "\" and \"" + name + "\" are the same module");
+            }
+        }
+
+        Map<String, Exported> exports = new ConcurrentHashMap<>();
+        modules.entrySet().parallelStream().forEach(e -> {
+            String module = moduleName(e.getKey());
+            for (ElfExport export : e.getValue().getExports()) {
+                exports.putIfAbsent(key(module, export.name()), new Exported(e.getKey(), export));
+            }
+        });
+
+        Map<String, List<RPLLink>> links = new ConcurrentHashMap<>();
+        Map<String, List<RPLImport>> unresolved = new ConcurrentHashMap<>();
+        modules.entrySet().parallelStream().forEach(e -> {
+            List<RPLLink> resolved = new ArrayList<>();
+            List<RPLImport> missing = new ArrayList<>();
+            e.getValue().forEachImport(rplImport -> {
+                Exported exported = exports.get(key(moduleName(rplImport.getRplName()), rplImport.getName()));
+                if (exported == null) {
+                    missing.add(rplImport);
+                } else {
+                    resolved.add(new RPLLink(e.getKey(), rplImport, exported.module, exported.export));
+                }
+            });
+            links.put(e.getKey(), Collections.unmodifiableList(resolved));
+            if (!missing.isEmpty()) {
+                unresolved.put(e.getKey(), Collections.unmodifiableList(missing));
+            }
+        });
+        return new RPLLinkResult(Collections.unmodifiableMap(links), Collections.unmodifiableMap(unresolved));
+    }
+
+    /**
+     * Normalizes a module or file name: lower case, without directory and .rpl or
+     * .rpx extension.
+     */
+    public static String moduleName(String name) {
+        String result = name.toLowerCase(Locale.ROOT);
+        int slash = Math.max(result.lastIndexOf('/'), result.lastIndexOf('\\'));
+        if (slash >= 0) {
+            result = result.substring(slash + 1);
+        }
+        if (result.endsWith(".rpl") || result.endsWith(".rpx")) {
+            result = result.substring(0, result.length() - 4);
+        }
+        return result;
+    }
+
+    private static String key(String module, String symbol) {
+        return module + '\0' + symbol;
+    }
+
+    private static class Exported {
+        final String module;
+        final ElfExport export;
+
+        Exported(String module, ElfExport export) {
+            this.module = module;
+            this.export = export;
+        }
+    }
+}
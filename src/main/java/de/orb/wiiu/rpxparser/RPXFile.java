@@ -1,22 +1,43 @@
 package de.orb.wiiu.rpxparser;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class RPXFile {
+/**
+ * A parsed RPX/RPL file.
+ * <p>
+ * Instances are safe to be queried from multiple threads once they have been
+ * configured (section cache, streaming inflation). All reads from the underlying
+ * buffers are either absolute or work on duplicates, and lazily inflated sections
+ * are published through the section cache.
+ */
+public class RPXFile implements Closeable {
     final ElfReader elf_reader;
     public static int MAX_FUNCTION_LENGTH_TO_COPY = 0;
 
-    private static final int MIN_SYMBOLS = 10;
+    static final int MIN_SYMBOLS = 10;
 
     public RPXFile(File f) throws IOException {
         this(Files.readAllBytes(f.toPath()));
@@ -31,49 +52,294 @@ public class RPXFile {
         elf_reader = new ElfReader(buf);
     }
 
+    public RPXFile(ElfReader reader) {
+        elf_reader = reader;
+    }
+
+    /**
+     * Loads a RPX/RPL by memory mapping the file instead of reading it onto the
+     * heap. Uncompressed sections are accessed in place.
+     */
+    public static RPXFile map(File f) throws IOException {
+        return new RPXFile(ElfReader.create(f));
+    }
+
+    /**
+     * Memory maps a file and checks its section headers against the given limits,
+     * see {@link ElfLimits}.
+     */
+    public static RPXFile map(File f, ElfLimits limits) throws IOException {
+        return new RPXFile(ElfReader.create(f, limits));
+    }
+
+    /**
+     * Opens a RPX/RPL on a channel. Only the headers are read up front, sections
+     * are read with positional reads when they are accessed and, combined with a
+     * bounded {@link LRUSectionCache}, are only kept while they are in use. Closing
+     * the file closes the channel.
+     */
+    public static RPXFile open(SeekableByteChannel channel) throws IOException {
+        return new RPXFile(ElfReader.create(channel));
+    }
+
+    /**
+     * Opens a RPX/RPL from a channel without random access, e.g. an entry of an
+     * archive. The data is spooled into a temporary file which is deleted on
+     * {@link #close()}, see {@link ElfSource#spool(ReadableByteChannel)}.
+     */
+    public static RPXFile open(ReadableByteChannel channel) throws IOException {
+        ElfSource source = ElfSource.spool(channel);
+        try {
+            return new RPXFile(new ElfReader(source));
+        } catch (IOException | RuntimeException e) {
+            try {
+                source.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    public static RPXFile open(InputStream in) throws IOException {
+        return open(Channels.newChannel(in));
+    }
+
+    /**
+     * Reads only the ELF header and section headers of a file, see
+     * {@link RPXProbe}.
+     */
+    public static RPXSummary probe(File f) throws IOException {
+        return RPXProbe.probe(f.toPath());
+    }
+
+    /**
+     * Shares the given cache for inflated sections, e.g. a {@link LRUSectionCache}
+     * to bound the memory of many open files.
+     */
+    public void setSectionCache(ElfSectionCache sectionCache) {
+        elf_reader.setSectionCache(sectionCache);
+    }
+
+    /**
+     * Sets a listener for parse events, e.g. an {@link ElfParseMetrics}, see
+     * {@link ElfReader#setParseListener(ElfParseListener)}.
+     */
+    public void setParseListener(ElfParseListener parseListener) {
+        elf_reader.setParseListener(parseListener);
+    }
+
+    /**
+     * Enables inflating compressed sections only as far as needed by
+     * {@link #getFunctionData(ElfSection, long, int)}.
+     */
+    public void setStreamingInflation(boolean streamingInflation) {
+        elf_reader.setStreamingInflation(streamingInflation);
+    }
+
+    /**
+     * Enables interning of decoded symbol and RPL names.
+     */
+    public void setInternStrings(boolean internStrings) {
+        elf_reader.setInternStrings(internStrings);
+    }
+
+    /**
+     * Enables caching of decoded symbol names, see
+     * {@link ElfReader#setCacheStrings(boolean)}.
+     */
+    public void setCacheStrings(boolean cacheStrings) {
+        elf_reader.setCacheStrings(cacheStrings);
+    }
+
+    /**
+     * Inflates all compressed sections in parallel on the common fork-join pool.
+     */
+    public CompletableFuture<Void> inflateSections() {
+        return elf_reader.inflateSections();
+    }
+
+    /**
+     * Inflates all compressed sections in parallel on the given executor.
+     */
+    public CompletableFuture<Void> inflateSections(Executor executor) {
+        return elf_reader.inflateSections(executor);
+    }
+
     public List<ElfExport> getExports() {
-        return elf_reader.sections() //
-                .filter(section -> section instanceof ElfExportsTable) //
+        return elf_reader.sections(ElfSection.SHT_RPL_EXPORTS).stream() //
                 .flatMap(m -> ((ElfExportsTable) m).stream()) //
                 .collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList));
     }
 
     public Map<String, List<RPLImport>> getImports() {
-        return elf_reader.sections() //
-                .filter(section -> section instanceof ElfRelocationTable) // We want to check ElfRelocationTable sections
-                .flatMap(section -> ((ElfRelocationTable) section).stream()) // Get all relocations
-                .flatMap(r -> r.symbol().isPresent() ? Stream.of(r.symbol().get()) : Stream.empty()) // Get symbols of relocations if existing
-                .filter(symbol -> symbol.section().filter(s -> (s instanceof ElfImportsTable)).isPresent()) // Only keep symbols of ElfImportsTable section
-                .map(symbol -> new RPLImport(symbol.name().orElseThrow(() -> new NoSuchElementException()),
-                        ((ElfImportsTable) symbol.section().get()).rplname())) // Map to RPLImport
-                .distinct() //
-                .collect(Collectors.collectingAndThen( //
-                        Collectors.groupingBy(RPLImport::getRplName, Collectors.toList()), // Group by RPLName
-                        Collections::unmodifiableMap));
+        return new RPLImportResolver(elf_reader).resolve();
+    }
+
+    /**
+     * Passes each imported symbol to the consumer without building the whole
+     * import map.
+     */
+    public void forEachImport(Consumer<RPLImport> consumer) {
+        new RPLImportResolver(elf_reader).forEach(consumer);
     }
 
     public Optional<byte[]> getFunctionData(ElfSymbol symbol) {
-        return symbol.section().flatMap(section -> getFunctionData(section, symbol.value() - section.address(), (int) symbol.size()));
+        return symbol.section().flatMap(section -> getFunctionData(section, symbol.value(), (int) symbol.size()));
     }
 
     public Optional<byte[]> getFunctionData(ElfSection section, long _offset, int length) {
-        if (_offset < section.address() || _offset > section.address() + section.size()) {
-            return Optional.empty();
+        return functionBuffer(section, _offset, length).map(buf -> {
+            byte[] data = new byte[length];
+            buf.get(data);
+            return data;
+        });
+    }
+
+    /**
+     * Returns the body of a function as a read-only view on the section buffer,
+     * without copying it.
+     */
+    public Optional<ByteBuffer> getFunctionSlice(ElfSymbol symbol) {
+        return symbol.section().flatMap(section -> functionBuffer(section, symbol.value(), (int) symbol.size())).map(ByteBuffer::slice);
+    }
+
+    /**
+     * Copies the bodies of the given functions one after another into
+     * <code>target</code>, starting at its current position.
+     * 
+     * @throws java.nio.BufferOverflowException if the target is too small.
+     */
+    public FunctionDataTable getFunctionData(List<ElfSymbol> symbols, ByteBuffer target) {
+        long[] addresses = new long[symbols.size()];
+        int[] offsets = new int[symbols.size()];
+        int[] lengths = new int[symbols.size()];
+        for (int i = 0; i < addresses.length; i++) {
+            ElfSymbol symbol = symbols.get(i);
+            addresses[i] = symbol.value();
+            offsets[i] = copyFunction(symbol.section().orElse(null), symbol.value(), symbol.size(), target);
+            lengths[i] = offsets[i] < 0 ? 0 : (int) symbol.size();
         }
+        return new FunctionDataTable(target, addresses, offsets, lengths);
+    }
 
-        long offsetInSection = _offset - section.address();
-        ByteBuffer buf = section.getSectionBuffer();
+    public FunctionDataTable getFunctionData(List<ElfSymbol> symbols) {
+        long size = symbols.stream().mapToLong(ElfSymbol::size).sum();
+        checkAllocation(size);
+        return getFunctionData(symbols, ByteBuffer.allocate((int) size));
+    }
 
-        buf.position((int) offsetInSection);
+    private void checkAllocation(long size) {
+        long max = elf_reader.limits.maxAllocationSize();
+        if (size > max) {
+            throw new UncheckedIOException(new ElfException("Function data of " + size + " bytes exceeds the limit of " + max));
+        }
+    }
+
+    /**
+     * Copies the bodies of all functions in the .text section, like
+     * {@link #getFunctionSymbolsText()}, into one new buffer. The symbol table is
+     * read with a cursor, no {@link ElfSymbol}s are created.
+     */
+    public FunctionDataTable getFunctionDataText() {
+        Optional<ElfSymbolTable> symtab = getSymbolTable();
+        Optional<ElfSection> text = getTextSection();
+        if (!symtab.isPresent() || !text.isPresent()) {
+            return new FunctionDataTable(ByteBuffer.allocate(0), new long[0], new int[0], new int[0]);
+        }
+        int textIndex = text.get().index();
+
+        ElfSymbolCursor cursor = symtab.get().cursor();
+        int count = 0;
+        long size = 0;
+        while (cursor.next()) {
+            if (isTextFunction(cursor, textIndex)) {
+                count++;
+                size += cursor.size();
+            }
+        }
+        checkAllocation(size);
+        ByteBuffer target = ByteBuffer.allocate((int) size);
+        long[] addresses = new long[count];
+        int[] offsets = new int[count];
+        int[] lengths = new int[count];
+        int i = 0;
+        cursor = symtab.get().cursor();
+        while (cursor.next()) {
+            if (isTextFunction(cursor, textIndex)) {
+                addresses[i] = cursor.value();
+                offsets[i] = copyFunction(text.get(), cursor.value(), cursor.size(), target);
+                lengths[i] = offsets[i] < 0 ? 0 : (int) cursor.size();
+                i++;
+            }
+        }
+        return new FunctionDataTable(target, addresses, offsets, lengths);
+    }
 
-        byte[] data = new byte[(int) length];
-        buf.get(data, 0, (int) length);
+    static boolean isTextFunction(ElfSymbolCursor cursor, int textIndex) {
+        return cursor.type() == ElfSymbol.STT_FUNC && cursor.sectionIndex() == textIndex && cursor.hasName();
+    }
 
-        return Optional.of(data);
+    private static int copyFunction(ElfSection section, long address, long length, ByteBuffer target) {
+        if (section == null) {
+            return -1;
+        }
+        Optional<ByteBuffer> buf = functionBuffer(section, address, (int) length);
+        if (!buf.isPresent()) {
+            return -1;
+        }
+        int offset = target.position();
+        target.put(buf.get());
+        return offset;
+    }
+
+    /**
+     * @return a read-only duplicate of the section buffer, positioned on the
+     *         function.
+     */
+    static Optional<ByteBuffer> functionBuffer(ElfSection section, long address, int length) {
+        if (address < section.address() || length < 0 || address + length > section.address() + section.size()) {
+            return Optional.empty();
+        }
+
+        long offsetInSection = address - section.address();
+        ByteBuffer buf = section.getSectionBuffer(offsetInSection + length).asReadOnlyBuffer();
+        buf.limit((int) (offsetInSection + length));
+        buf.position((int) offsetInSection);
+        return Optional.of(buf);
     }
 
     public Optional<ElfSymbolTable> getSymbolTable() {
-        return elf_reader.section(".symtab").map(section -> (ElfSymbolTable) section);
+        return elf_reader.section(".symtab").filter(section -> section instanceof ElfSymbolTable).map(section -> (ElfSymbolTable) section);
+    }
+
+    /**
+     * Hashes all .text functions in parallel, see {@link FunctionFingerprinter}.
+     */
+    public FunctionFingerprints getFunctionFingerprints() {
+        return new FunctionFingerprinter(elf_reader).fingerprint();
+    }
+
+    /**
+     * Extracts the direct calls between the .text functions, see
+     * {@link FunctionCallGraphBuilder}.
+     */
+    public FunctionCallGraph getCallGraph() {
+        return new FunctionCallGraphBuilder(elf_reader).build();
+    }
+
+    /**
+     * @return a loader to create the relocated memory image of this file.
+     */
+    public RPXLoader loader() {
+        return new RPXLoader(elf_reader);
+    }
+
+    /**
+     * @return the function or object symbol covering the given address.
+     */
+    public Optional<ElfSymbol> getSymbolAt(long address) {
+        return getSymbolTable().flatMap(st -> st.addressIndex().symbolAt(address));
     }
 
     public Optional<ElfSection> getTextSection() {
@@ -81,21 +347,75 @@ public class RPXFile {
     }
 
     public boolean hasSymbols() {
-        return getFunctionSymbolsTextStream().limit(MIN_SYMBOLS).count() == MIN_SYMBOLS;
+        int textIndex = elf_reader.sectionIndex(".text");
+        Optional<ElfSymbolTable> symtab = getSymbolTable();
+        if (textIndex < 0 || !symtab.isPresent()) {
+            return false;
+        }
+        ElfSymbolCursor cursor = symtab.get().cursor();
+        int count = 0;
+        while (count < MIN_SYMBOLS && cursor.next()) {
+            if (isTextFunction(cursor, textIndex)) {
+                count++;
+            }
+        }
+        return count == MIN_SYMBOLS;
     }
 
     public Stream<ElfSymbol> getSymbols() {
         return getSymbolTable().map(st -> st.stream()).orElse(Stream.empty());
     }
 
+    /**
+     * The function symbols with a name in the .text section. The symbols are
+     * selected by comparing the raw symbol entries against the section index, only
+     * the matching symbols are created. The stream is lazy, short-circuiting
+     * operations stop the scan.
+     */
     public Stream<ElfSymbol> getFunctionSymbolsTextStream() {
-        return getSymbols().filter(s -> s.type() == ElfSymbol.STT_FUNC) // We are only interested in functions
-                .filter(s -> s.name().map(name -> name).filter(name -> !name.isEmpty()).isPresent()) // Not interested in functions with an empty name
-                .filter(s -> s.section().filter(m -> ".text".equals(m.name())).isPresent()); //
+        int textIndex = elf_reader.sectionIndex(".text");
+        Optional<ElfSymbolTable> symtab = getSymbolTable();
+        if (textIndex < 0 || !symtab.isPresent()) {
+            return Stream.empty();
+        }
+        ElfSymbolCursor cursor = symtab.get().cursor();
+        Spliterator.OfInt indices = new Spliterators.AbstractIntSpliterator(cursor.count(), Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(IntConsumer action) {
+                while (cursor.next()) {
+                    if (isTextFunction(cursor, textIndex)) {
+                        action.accept(cursor.index());
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+        return StreamSupport.intStream(indices, false).mapToObj(symtab.get()::symbol);
     }
 
+    /**
+     * Same selection as {@link #getFunctionSymbolsTextStream()}, filled in one
+     * pass without the stream machinery.
+     */
     public List<ElfSymbol> getFunctionSymbolsText() {
-        return getFunctionSymbolsTextStream().collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList));
+        int textIndex = elf_reader.sectionIndex(".text");
+        ElfSymbolTable symtab = getSymbolTable().orElse(null);
+        if (textIndex < 0 || symtab == null) {
+            return Collections.emptyList();
+        }
+        List<ElfSymbol> result = new ArrayList<>();
+        ElfSymbolCursor cursor = symtab.cursor();
+        while (cursor.next()) {
+            if (isTextFunction(cursor, textIndex)) {
+                result.add(symtab.symbol(cursor.index()));
+            }
+        }
+        return Collections.unmodifiableList(result);
     }
 
+    @Override
+    public void close() throws IOException {
+        elf_reader.close();
+    }
 }
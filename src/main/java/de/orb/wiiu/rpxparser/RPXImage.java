@@ -0,0 +1,83 @@
+package de.orb.wiiu.rpxparser;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The loaded memory image created by {@link RPXLoader}.
+ */
+public class RPXImage {
+    private final ByteBuffer image;
+    private final long base;
+    private final long[] sectionAddresses;
+    private final long appliedRelocations;
+    private final long unsupportedRelocations;
+    private final long overflowedRelocations;
+    private final int unresolvedImports;
+
+    RPXImage(ByteBuffer image, long base, long[] sectionAddresses, long appliedRelocations, long unsupportedRelocations, long overflowedRelocations,
+            int unresolvedImports) {
+        this.image = image;
+        this.base = base;
+        this.sectionAddresses = sectionAddresses;
+        this.appliedRelocations = appliedRelocations;
+        this.unsupportedRelocations = unsupportedRelocations;
+        this.overflowedRelocations = overflowedRelocations;
+        this.unresolvedImports = unresolvedImports;
+    }
+
+    /**
+     * @return the image, index 0 is the address {@link #base()}.
+     */
+    public ByteBuffer image() {
+        return image;
+    }
+
+    public long base() {
+        return base;
+    }
+
+    /**
+     * @return the address the section was loaded to, -1 if it is not part of the
+     *         image.
+     */
+    public long sectionAddress(int sectionIndex) {
+        return sectionAddresses[sectionIndex];
+    }
+
+    /**
+     * @return the big-endian word at the given address.
+     */
+    public int getInt(long address) {
+        return image.getInt((int) (address - base));
+    }
+
+    public long appliedRelocations() {
+        return appliedRelocations;
+    }
+
+    /**
+     * @return the number of relocations which were left untouched, because the
+     *         loader does not implement their type or they point outside of the
+     *         image.
+     */
+    public long unsupportedRelocations() {
+        return unsupportedRelocations;
+    }
+
+    /**
+     * @return the number of branch relocations which were left untouched because
+     *         the target is out of reach of the instruction, e.g. more than 32 MB
+     *         away for <code>R_PPC_REL24</code>.
+     */
+    public long overflowedRelocations() {
+        return overflowedRelocations;
+    }
+
+    /**
+     * @return the number of imported symbols the resolver did not know, their
+     *         address in the import section was used instead.
+     */
+    public int unresolvedImports() {
+        return unresolvedImports;
+    }
+}
@@ -0,0 +1,393 @@
+package de.orb.wiiu.rpxparser;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary snapshot of the metadata of a RPX/RPL: sections, symbols,
+ * imports and exports. An index is queried in place, neither the original file
+ * nor any compressed section is touched. {@link #open(Path)} memory maps the
+ * index, {@link #read(Path)} reads it into the heap so the file can be replaced
+ * while the index is in use.
+ * <p>
+ * Layout (big-endian): a fixed header with the key of the indexed file (size,
+ * modification time, time of indexing, SHA-256 of the content) and the entry
+ * counts, followed by fixed size section, symbol, import and export records and
+ * a pool of NUL terminated UTF-8 strings. Name fields hold absolute offsets into
+ * the index, the name of a TLS export carries {@link ElfExport#EXN_RPL_TLS}.
+ * 
+ * @see RPXIndexCache
+ */
+public class RPXIndex {
+    private static final int MAGIC = 0x52505849; // "RPXI"
+    private static final int VERSION = 2;
+    private static final int HASH_SIZE = 32;
+    private static final int HASH_OFFSET = 4 + 4 + 8 + 8 + 8;
+    private static final int HEADER_SIZE = HASH_OFFSET + HASH_SIZE + 5 * 4;
+    private static final int SECTION_SIZE = 28;
+    private static final int SYMBOL_SIZE = 16;
+    private static final int IMPORT_SIZE = 8;
+    private static final int EXPORT_SIZE = 12;
+
+    private final ByteBuffer buf;
+    private final int sectionCount;
+    private final int symbolCount;
+    private final int importCount;
+    private final int exportCount;
+    private final int sectionsOffset;
+    private final int symbolsOffset;
+    private final int importsOffset;
+    private final int exportsOffset;
+
+    RPXIndex(ByteBuffer buf) throws ElfException {
+        this.buf = buf;
+        if (buf.limit() < HEADER_SIZE || buf.getInt(0) != MAGIC) {
+            throw new ElfException("Not a RPX index");
+        }
+        if (buf.getInt(4) != VERSION) {
+            throw new ElfException("Unsupported RPX index version " + buf.getInt(4));
+        }
+        int pos = HASH_OFFSET + HASH_SIZE;
+        sectionCount = buf.getInt(pos);
+        symbolCount = buf.getInt(pos + 4);
+        importCount = buf.getInt(pos + 8);
+        exportCount = buf.getInt(pos + 12);
+        int stringsSize = buf.getInt(pos + 16);
+        if (sectionCount < 0 || symbolCount < 0 || importCount < 0 || exportCount < 0 || stringsSize < 0) {
+            throw new ElfException("Invalid RPX index");
+        }
+        // computed in long, the counts of a broken index may overflow int
+        long symbols = HEADER_SIZE + (long) sectionCount * SECTION_SIZE;
+        long imports = symbols + (long) symbolCount * SYMBOL_SIZE;
+        long exports = imports + (long) importCount * IMPORT_SIZE;
+        long expectedSize = exports + (long) exportCount * EXPORT_SIZE + stringsSize;
+        if (expectedSize != buf.limit()) {
+            throw new ElfException("Truncated RPX index");
+        }
+        sectionsOffset = HEADER_SIZE;
+        symbolsOffset = (int) symbols;
+        importsOffset = (int) imports;
+        exportsOffset = (int) exports;
+    }
+
+    /**
+     * Memory maps an index. The mapping lives until the index is garbage
+     * collected, on Windows the file can not be replaced until then.
+     */
+    public static RPXIndex open(Path path) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "r")) {
+            return new RPXIndex(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length()));
+        }
+    }
+
+    /**
+     * Reads an index into the heap, the file is not kept open.
+     */
+    public static RPXIndex read(Path path) throws IOException {
+        return new RPXIndex(ByteBuffer.wrap(Files.readAllBytes(path)));
+    }
+
+    public long fileSize() {
+        return buf.getLong(8);
+    }
+
+    public long lastModified() {
+        return buf.getLong(16);
+    }
+
+    /**
+     * @return the time the indexed content was read, in milliseconds.
+     */
+    public long indexedAt() {
+        return buf.getLong(24);
+    }
+
+    public byte[] contentHash() {
+        byte[] hash = new byte[HASH_SIZE];
+        ByteBuffer tmp = buf.duplicate();
+        tmp.position(HASH_OFFSET);
+        tmp.get(hash);
+        return hash;
+    }
+
+    private String string(int offset) {
+        return ElfStrings.decode(buf, offset);
+    }
+
+    public int sectionCount() {
+        return sectionCount;
+    }
+
+    public String sectionName(int index) {
+        return string(buf.getInt(sectionsOffset + index * SECTION_SIZE));
+    }
+
+    public int sectionType(int index) {
+        return buf.getInt(sectionsOffset + index * SECTION_SIZE + 4);
+    }
+
+    public long sectionFlags(int index) {
+        return buf.getInt(sectionsOffset + index * SECTION_SIZE + 8) & 0xffffffffL;
+    }
+
+    public long sectionAddress(int index) {
+        return buf.getInt(sectionsOffset + index * SECTION_SIZE + 12) & 0xffffffffL;
+    }
+
+    public long sectionSize(int index) {
+        return buf.getInt(sectionsOffset + index * SECTION_SIZE + 16) & 0xffffffffL;
+    }
+
+    public long sectionFileSize(int index) {
+        return buf.getInt(sectionsOffset + index * SECTION_SIZE + 20) & 0xffffffffL;
+    }
+
+    public long sectionEntrySize(int index) {
+        return buf.getInt(sectionsOffset + index * SECTION_SIZE + 24) & 0xffffffffL;
+    }
+
+    /**
+     * @return the number of entries of the <code>.symtab</code>.
+     */
+    public int symbolCount() {
+        return symbolCount;
+    }
+
+    public String symbolName(int index) {
+        return string(buf.getInt(symbolsOffset + index * SYMBOL_SIZE));
+    }
+
+    public long symbolValue(int index) {
+        return buf.getInt(symbolsOffset + index * SYMBOL_SIZE + 4) & 0xffffffffL;
+    }
+
+    public long symbolSize(int index) {
+        return buf.getInt(symbolsOffset + index * SYMBOL_SIZE + 8) & 0xffffffffL;
+    }
+
+    public byte symbolBind(int index) {
+        return (byte) ((buf.get(symbolsOffset + index * SYMBOL_SIZE + 12) & 0xff) >> 4);
+    }
+
+    public byte symbolType(int index) {
+        return (byte) (buf.get(symbolsOffset + index * SYMBOL_SIZE + 12) & 0xf);
+    }
+
+    public int symbolSectionIndex(int index) {
+        return buf.getShort(symbolsOffset + index * SYMBOL_SIZE + 14) & 0xffff;
+    }
+
+    /**
+     * @return the indices of the symbols {@link RPXFile#getFunctionSymbolsText()}
+     *         returns.
+     */
+    public int[] functionSymbolsText() {
+        int text = -1;
+        for (int i = 0; i < sectionCount && text < 0; i++) {
+            if (".text".equals(sectionName(i))) {
+                text = i;
+            }
+        }
+        int[] result = new int[symbolCount];
+        int count = 0;
+        for (int i = 0; i < symbolCount; i++) {
+            int pos = symbolsOffset + i * SYMBOL_SIZE;
+            if (symbolType(i) == ElfSymbol.STT_FUNC && symbolSectionIndex(i) == text && buf.get(buf.getInt(pos)) != 0) {
+                result[count++] = i;
+            }
+        }
+        int[] trimmed = new int[count];
+        System.arraycopy(result, 0, trimmed, 0, count);
+        return trimmed;
+    }
+
+    public Map<String, List<RPLImport>> getImports() {
+        Map<String, List<RPLImport>> result = new LinkedHashMap<>();
+        for (int i = 0; i < importCount; i++) {
+            int pos = importsOffset + i * IMPORT_SIZE;
+            RPLImport rplImport = new RPLImport(string(buf.getInt(pos)), string(buf.getInt(pos + 4)));
+            result.computeIfAbsent(rplImport.getRplName(), k -> new ArrayList<>()).add(rplImport);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    public List<ElfExport> getExports() {
+        List<ElfExport> result = new ArrayList<>(exportCount);
+        for (int i = 0; i < exportCount; i++) {
+            int pos = exportsOffset + i * EXPORT_SIZE;
+            result.add(new ElfExport(buf, pos, (buf.getInt(pos + 8) & 1) != 0));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Writes the index of <code>file</code>. The key values are stored to
+     * validate the index later, see {@link RPXIndexCache}.
+     */
+    public static void write(RPXFile file, long fileSize, long lastModified, byte[] contentHash, Path target) throws IOException {
+        write(file, fileSize, lastModified, System.currentTimeMillis(), contentHash, target);
+    }
+
+    /**
+     * @param indexedAt the time the content of the file was read.
+     */
+    public static void write(RPXFile file, long fileSize, long lastModified, long indexedAt, byte[] contentHash, Path target) throws IOException {
+        if (contentHash.length != HASH_SIZE) {
+            throw new IllegalArgumentException("contentHash must be " + HASH_SIZE + " bytes");
+        }
+        ElfReader reader = file.elf_reader;
+        StringPool strings = new StringPool();
+        ByteBuffer sections = ByteBuffer.allocate(reader.sections.length * SECTION_SIZE);
+        for (ElfSection section : reader.sections) {
+            if (section == null) {
+                sections.putInt(strings.add("")).putInt(ElfSection.SHT_NULL).putInt(0).putInt(0).putInt(0).putInt(0).putInt(0);
+                continue;
+            }
+            sections.putInt(strings.add(section.name())).putInt(section.type()).putInt((int) section.flags()).putInt((int) section.address());
+            sections.putInt((int) section.size()).putInt((int) section.orgSize).putInt((int) section.entrySize());
+        }
+
+        ElfSymbolTable symtab = file.getSymbolTable().orElse(null);
+        int symbolCount = symtab == null ? 0 : symtab.count();
+        ByteBuffer symbols = ByteBuffer.allocate(symbolCount * SYMBOL_SIZE);
+        if (symtab != null) {
+            ElfStringTable strtab = symtab.link().filter(l -> l instanceof ElfStringTable).map(l -> (ElfStringTable) l).orElse(null);
+            ElfSymbolCursor cursor = symtab.cursor();
+            while (cursor.next()) {
+                symbols.putInt(strings.add(strtab == null ? "" : strtab.string(cursor.nameIndex())));
+                symbols.putInt((int) cursor.value()).putInt((int) cursor.size()).put((byte) cursor.info()).put(cursor.other())
+                        .putShort((short) cursor.sectionIndex());
+            }
+        }
+
+        List<RPLImport> imports = new ArrayList<>();
+        file.getImports().values().forEach(imports::addAll);
+        ByteBuffer importBuf = ByteBuffer.allocate(imports.size() * IMPORT_SIZE);
+        for (RPLImport rplImport : imports) {
+            importBuf.putInt(strings.add(rplImport.getName())).putInt(strings.add(rplImport.getRplName()));
+        }
+
+        List<ElfExport> exports = file.getExports();
+        ByteBuffer exportBuf = ByteBuffer.allocate(exports.size() * EXPORT_SIZE);
+        for (ElfExport export : exports) {
+            exportBuf.putInt((int) export.offset()).putInt(strings.add(export.name())).putInt(export.isData() ? 1 : 0);
+        }
+
+        // string offsets are relative to the pool, make them absolute
+        int stringsOffset = HEADER_SIZE + sections.capacity() + symbols.capacity() + importBuf.capacity() + exportBuf.capacity();
+        relocate(sections, SECTION_SIZE, 0, stringsOffset);
+        relocate(symbols, SYMBOL_SIZE, 0, stringsOffset);
+        relocate(importBuf, IMPORT_SIZE, 0, stringsOffset);
+        relocate(importBuf, IMPORT_SIZE, 4, stringsOffset);
+        relocate(exportBuf, EXPORT_SIZE, 4, stringsOffset);
+        for (int i = 0; i < exports.size(); i++) {
+            if (exports.get(i).isTLS()) {
+                int pos = i * EXPORT_SIZE + 4;
+                exportBuf.putInt(pos, exportBuf.getInt(pos) | ElfExport.EXN_RPL_TLS);
+            }
+        }
+
+        Path tmp = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream os = Files.newOutputStream(tmp); DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(fileSize);
+                out.writeLong(lastModified);
+                out.writeLong(indexedAt);
+                out.write(contentHash);
+                out.writeInt(reader.sections.length);
+                out.writeInt(symbolCount);
+                out.writeInt(imports.size());
+                out.writeInt(exports.size());
+                out.writeInt(strings.size());
+                out.write(sections.array());
+                out.write(symbols.array());
+                out.write(importBuf.array());
+                out.write(exportBuf.array());
+                strings.writeTo(out);
+            }
+            replace(tmp, target);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Writes a copy of <code>index</code> with a new modification and indexing
+     * time to <code>target</code>, replacing the file instead of writing into it.
+     * 
+     * @return the new index.
+     */
+    static RPXIndex updateKey(RPXIndex index, long lastModified, long indexedAt, Path target) throws IOException {
+        ByteBuffer source = index.buf.duplicate();
+        source.position(0);
+        ByteBuffer copy = ByteBuffer.allocate(source.remaining());
+        copy.put(source).flip();
+        copy.putLong(16, lastModified).putLong(24, indexedAt);
+        Path tmp = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, copy.array());
+            replace(tmp, target);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return new RPXIndex(copy);
+    }
+
+    private static void replace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void relocate(ByteBuffer records, int recordSize, int field, int base) {
+        for (int pos = field; pos < records.capacity(); pos += recordSize) {
+            records.putInt(pos, records.getInt(pos) + base);
+        }
+    }
+
+    private static class StringPool {
+        private final Map<String, Integer> offsets = new HashMap<>();
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+        int add(String s) {
+            Integer offset = offsets.get(s);
+            if (offset == null) {
+                offset = data.size();
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                data.write(bytes, 0, bytes.length);
+                data.write(0);
+                offsets.put(s, offset);
+            }
+            return offset;
+        }
+
+        int size() {
+            return data.size();
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            data.writeTo(out);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package de.orb.wiiu.rpxparser;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Directory of {@link RPXIndex} files, one per path of an indexed file. An index
+ * is reused as long as size and modification time of the file did not change. If
+ * they did, or the modification time is too close to the time the index was
+ * created to tell later writes apart, the content hash decides whether the file
+ * has to be parsed again. {@link #setVerifyContent(boolean)} hashes the content
+ * on every lookup, for files which can change without a new modification time.
+ * <p>
+ * Indexes are returned as heap copies, see {@link RPXIndex#read(Path)}, so an
+ * index file can be replaced while earlier indexes are still in use.
+ */
+public class RPXIndexCache {
+    // coarsest modification time resolution of common file systems (FAT)
+    private static final long MODIFICATION_TIME_RESOLUTION = 2000;
+
+    private final Path directory;
+    private boolean verifyContent = false;
+
+    public RPXIndexCache(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    public boolean isVerifyContent() {
+        return verifyContent;
+    }
+
+    /**
+     * Compares the content hash on every lookup instead of only when size or
+     * modification time changed.
+     */
+    public void setVerifyContent(boolean verifyContent) {
+        this.verifyContent = verifyContent;
+    }
+
+    /**
+     * Returns the index of the file, parsing the file and writing the index if
+     * there is no valid one yet.
+     */
+    public RPXIndex get(Path file) throws IOException {
+        long size = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        Path indexPath = indexPath(file);
+
+        RPXIndex index = null;
+        if (Files.isRegularFile(indexPath)) {
+            try {
+                index = RPXIndex.read(indexPath);
+            } catch (ElfException e) {
+                // broken or outdated format, rebuild it
+            }
+        }
+        boolean keyMatches = index != null && index.fileSize() == size && index.lastModified() == lastModified;
+        // the file may have been written again within the resolution of its modification time
+        boolean racy = index != null && index.indexedAt() - index.lastModified() < MODIFICATION_TIME_RESOLUTION;
+        if (keyMatches && !racy && !verifyContent) {
+            return index;
+        }
+
+        long indexedAt = System.currentTimeMillis();
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            MappedByteBuffer buf = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            byte[] hash = sha256(buf.duplicate());
+            if (index != null && index.fileSize() == size && Arrays.equals(hash, index.contentHash())) {
+                return keyMatches && !racy ? index : RPXIndex.updateKey(index, lastModified, indexedAt, indexPath);
+            }
+            RPXIndex.write(new RPXFile(new ElfReader(buf)), size, lastModified, indexedAt, hash, indexPath);
+        }
+        return RPXIndex.read(indexPath);
+    }
+    private Path indexPath(Path file) {
+        byte[] pathHash = sha256(ByteBuffer.wrap(file.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8)));
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 16; i++) {
+            name.append(String.format("%02x", pathHash[i]));
+        }
+        return directory.resolve(name.append(".rpxidx").toString());
+    }
+
+    private static byte[] sha256(ByteBuffer buf) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(buf);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
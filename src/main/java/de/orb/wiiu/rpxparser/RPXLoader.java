@@ -0,0 +1,275 @@
+package de.orb.wiiu.rpxparser;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lays out the allocated sections of a file in one buffer and applies the
+ * <code>R_PPC_*</code> relocations of all RELA sections.
+ * <p>
+ * Sections are either placed one after another starting at a base address, or
+ * at their linked address. Imported symbols are resolved through an
+ * {@link ImportResolver}. The symbol addresses are computed once up front, the
+ * relocation tables are then applied in parallel, directly from the section
+ * buffers.
+ */
+public class RPXLoader {
+    private static final int SHF_ALLOC = 0x2;
+
+    public interface ImportResolver {
+        /**
+         * @return the address of the symbol, or empty to keep the address in the
+         *         import section.
+         */
+        OptionalLong resolve(String rplName, String symbolName);
+    }
+
+    private final ElfReader reader;
+    private long base = 0x02000000L;
+    private boolean preserveAddresses;
+    private ImportResolver importResolver = (rplName, symbolName) -> OptionalLong.empty();
+
+    public RPXLoader(ElfReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Sets the address of the first section when the sections are packed.
+     */
+    public RPXLoader setBase(long base) {
+        this.base = base;
+        return this;
+    }
+
+    /**
+     * Places every section at its linked address instead of packing them. The
+     * image then spans from the lowest to the highest section address.
+     */
+    public RPXLoader setPreserveAddresses(boolean preserveAddresses) {
+        this.preserveAddresses = preserveAddresses;
+        return this;
+    }
+
+    public RPXLoader setImportResolver(ImportResolver importResolver) {
+        this.importResolver = importResolver;
+        return this;
+    }
+
+    public RPXImage load() throws ElfException {
+        ElfSection[] sections = reader.sections;
+        long[] addresses = new long[sections.length];
+        Arrays.fill(addresses, -1);
+
+        ElfSection[] loaded = reader.sections() //
+                .filter(s -> (s.flags() & SHF_ALLOC) != 0 && !(s instanceof ElfImportsTable) && !(s instanceof ElfExportsTable)) //
+                .sorted(Comparator.comparingLong(ElfSection::address)) //
+                .toArray(ElfSection[]::new);
+        long imageBase = preserveAddresses && loaded.length > 0 ? loaded[0].address() : base;
+        long end = imageBase;
+        for (ElfSection section : loaded) {
+            long address = preserveAddresses ? section.address() : align(end, section.align());
+            addresses[section.index()] = address;
+            end = Math.max(end, address + section.size());
+        }
+        if (end - imageBase > reader.limits.maxAllocationSize()) {
+            throw new ElfException(String.format("Image from %08X to %08X is too large", imageBase, end));
+        }
+
+        ByteBuffer image = ByteBuffer.allocate((int) (end - imageBase)).order(reader.endian());
+        for (ElfSection section : loaded) {
+            if (section.type() == ElfSection.SHT_NOBITS) {
+                continue;
+            }
+            ByteBuffer data = section.getSectionBuffer().duplicate();
+            data.clear();
+            ByteBuffer target = image.duplicate();
+            target.position((int) (addresses[section.index()] - imageBase));
+            target.put(data);
+        }
+
+        AtomicLong applied = new AtomicLong();
+        AtomicLong unsupported = new AtomicLong();
+        AtomicLong overflowed = new AtomicLong();
+        AtomicInteger unresolved = new AtomicInteger();
+        Map<ElfSymbolTable, long[]> symbolAddresses = new IdentityHashMap<>();
+        reader.sections() //
+                .filter(s -> isRelocationTable(s) && addresses[s.info()] >= 0) //
+                .map(s -> (ElfSymbolTable) s.link().get()) //
+                .distinct() //
+                .forEach(symtab -> symbolAddresses.put(symtab, symbolAddresses(symtab, addresses, unresolved)));
+
+        reader.sections() //
+                .filter(s -> isRelocationTable(s) && addresses[s.info()] >= 0) //
+                .parallel() //
+                .forEach(table -> {
+                    long[] counts = apply(table, symbolAddresses.get(table.link().get()), image, imageBase, addresses);
+                    applied.addAndGet(counts[0]);
+                    unsupported.addAndGet(counts[1]);
+                    overflowed.addAndGet(counts[2]);
+                });
+        return new RPXImage(image, imageBase, addresses, applied.get(), unsupported.get(), overflowed.get(), unresolved.get());
+    }
+
+    private boolean isRelocationTable(ElfSection section) {
+        return section instanceof ElfRelocationTable && !(section instanceof ElfImportsTable) && section.info() > 0
+                && section.info() < reader.sections.length && section.link().filter(l -> l instanceof ElfSymbolTable).isPresent();
+    }
+
+    private long[] symbolAddresses(ElfSymbolTable symtab, long[] addresses, AtomicInteger unresolved) {
+        long[] result = new long[symtab.count()];
+        ElfStringTable strtab = symtab.link().filter(l -> l instanceof ElfStringTable).map(l -> (ElfStringTable) l).orElse(null);
+        ElfSymbolCursor cursor = symtab.cursor();
+        while (cursor.next()) {
+            int sectionIndex = cursor.sectionIndex();
+            long value = cursor.value();
+            ElfSection section = sectionIndex < reader.sections.length ? reader.sections[sectionIndex] : null;
+            if (section instanceof ElfImportsTable && strtab != null) {
+                OptionalLong address = importResolver.resolve(((ElfImportsTable) section).rplname(), strtab.string(cursor.nameIndex()));
+                if (!address.isPresent()) {
+                    unresolved.incrementAndGet();
+                }
+                result[cursor.index()] = address.orElse(value);
+            } else if (section != null && addresses[sectionIndex] >= 0) {
+                result[cursor.index()] = addresses[sectionIndex] + (value - section.address());
+            } else {
+                result[cursor.index()] = value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of applied, of unsupported and of overflowed relocations.
+     */
+    private long[] apply(ElfSection table, long[] symbols, ByteBuffer image, long imageBase, long[] addresses) {
+        ElfSection target = reader.sections[table.info()];
+        long delta = addresses[table.info()] - target.address();
+        ByteBuffer buf = table.getSectionBuffer();
+        int entrySize = (int) table.entrySize();
+        int count = table.count();
+        long applied = 0;
+        long unsupported = 0;
+        long overflowed = 0;
+        for (int i = 0; i < count; i++) {
+            int pos = i * entrySize;
+            long offset = (buf.getInt(pos) & 0xffffffffL) + delta;
+            int info = buf.getInt(pos + 4);
+            int type = info & 0xff;
+            int symbol = info >>> 8;
+            long addend = entrySize >= 12 ? buf.getInt(pos + 8) : 0;
+            if (type == ElfRelocation.R_PPC_NONE) {
+                continue;
+            }
+            long p = offset - imageBase;
+            if (p < 0 || p + width(type) > image.limit() || symbol >= symbols.length) {
+                unsupported++;
+                continue;
+            }
+            int index = (int) p;
+            long value = symbols[symbol] + addend;
+            long relative = value - offset;
+            if (!inRange(type, value, relative)) {
+                overflowed++;
+                continue;
+            }
+            switch (type) {
+            case ElfRelocation.R_PPC_ADDR32:
+                image.putInt(index, (int) value);
+                break;
+            case ElfRelocation.R_PPC_REL32:
+                image.putInt(index, (int) relative);
+                break;
+            case ElfRelocation.R_PPC_ADDR24:
+                image.putInt(index, (image.getInt(index) & ~0x03FFFFFC) | ((int) value & 0x03FFFFFC));
+                break;
+            case ElfRelocation.R_PPC_REL24:
+                image.putInt(index, (image.getInt(index) & ~0x03FFFFFC) | ((int) relative & 0x03FFFFFC));
+                break;
+            case ElfRelocation.R_PPC_ADDR14:
+                image.putInt(index, (image.getInt(index) & ~0xFFFC) | ((int) value & 0xFFFC));
+                break;
+            case ElfRelocation.R_PPC_REL14:
+                image.putInt(index, (image.getInt(index) & ~0xFFFC) | ((int) relative & 0xFFFC));
+                break;
+            case ElfRelocation.R_PPC_ADDR16:
+            case ElfRelocation.R_PPC_ADDR16_LO:
+                image.putShort(index, (short) value);
+                break;
+            case ElfRelocation.R_PPC_ADDR16_HI:
+                image.putShort(index, (short) (value >> 16));
+                break;
+            case ElfRelocation.R_PPC_ADDR16_HA:
+                image.putShort(index, (short) ((value + 0x8000) >> 16));
+                break;
+            case ElfRelocation.R_PPC_GHS_REL16_LO:
+                image.putShort(index, (short) relative);
+                break;
+            case ElfRelocation.R_PPC_GHS_REL16_HI:
+                image.putShort(index, (short) (relative >> 16));
+                break;
+            case ElfRelocation.R_PPC_GHS_REL16_HA:
+                image.putShort(index, (short) ((relative + 0x8000) >> 16));
+                break;
+            default:
+                unsupported++;
+                continue;
+            }
+            applied++;
+        }
+        return new long[] { applied, unsupported, overflowed };
+    }
+
+    /**
+     * Checks that the target of a branch relocation fits the signed displacement
+     * of the instruction: 26 bits (32 MB) for <code>b</code>, 16 bits (32 KB) for
+     * <code>bc</code>. Absolute branches have to reach the address sign extended.
+     */
+    private static boolean inRange(int type, long value, long relative) {
+        switch (type) {
+        // the address space wraps around, like the displacement does
+        case ElfRelocation.R_PPC_REL24:
+            return fits((int) relative, 26);
+        case ElfRelocation.R_PPC_REL14:
+            return fits((int) relative, 16);
+        case ElfRelocation.R_PPC_ADDR24:
+            return fits((int) value, 26);
+        case ElfRelocation.R_PPC_ADDR14:
+            return fits((int) value, 16);
+        default:
+            return true;
+        }
+    }
+
+    private static boolean fits(long value, int bits) {
+        long limit = 1L << (bits - 1);
+        return value >= -limit && value < limit;
+    }
+
+    private static int width(int type) {
+        switch (type) {
+        case ElfRelocation.R_PPC_ADDR16:
+        case ElfRelocation.R_PPC_ADDR16_LO:
+        case ElfRelocation.R_PPC_ADDR16_HI:
+        case ElfRelocation.R_PPC_ADDR16_HA:
+        case ElfRelocation.R_PPC_GHS_REL16_LO:
+        case ElfRelocation.R_PPC_GHS_REL16_HI:
+        case ElfRelocation.R_PPC_GHS_REL16_HA:
+            return 2;
+        default:
+            return 4;
+        }
+    }
+
+    private static long align(long address, long alignment) {
+        if (alignment <= 1) {
+            return address;
+        }
+        return (address + alignment - 1) / alignment * alignment;
+    }
+}
@@ -0,0 +1,154 @@
+package de.orb.wiiu.rpxparser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the ELF header and the section header table of a file with a few small
+ * positional reads, without loading or inflating any section except the section
+ * name table.
+ */
+public class RPXProbe {
+    private static final int ELF_HEADER_SIZE = 52;
+    private static final int SECTION_HEADER_SIZE = 40;
+
+    private RPXProbe() {
+    }
+
+    public static RPXSummary probe(Path path) throws IOException {
+        return probe(path, new ElfLimits());
+    }
+
+    public static RPXSummary probe(Path path, ElfLimits limits) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return probe(channel, limits);
+        }
+    }
+
+    /**
+     * Probes with the default {@link ElfLimits}, which bound the inflated section
+     * name table.
+     */
+    public static RPXSummary probe(FileChannel channel) throws IOException {
+        return probe(channel, new ElfLimits());
+    }
+
+    public static RPXSummary probe(FileChannel channel, ElfLimits limits) throws IOException {
+        ByteBuffer header = read(channel, 0, ELF_HEADER_SIZE);
+        if (header.get(0) != 0x7f || header.get(1) != 'E' || header.get(2) != 'L' || header.get(3) != 'F') {
+            throw new ElfException("Invalid ELF signature");
+        }
+        if (header.get(4) != 1) {
+            throw new ElfException(header.get(4) == 2 ? "ELF64 not supported" : "Invalid ELF class");
+        }
+        switch (header.get(5)) {
+        case 1:
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            break;
+        case 2:
+            header.order(ByteOrder.BIG_ENDIAN);
+            break;
+        default:
+            throw new ElfException("Invalid ELF endian");
+        }
+
+        long shoff = header.getInt(32) & 0xffffffffL;
+        int entrySize = header.getShort(46) & 0xffff;
+        int entries = header.getShort(48) & 0xffff;
+        int shstrndx = header.getShort(50) & 0xffff;
+        if (entries > 0 && entrySize < SECTION_HEADER_SIZE) {
+            throw new ElfException("Invalid section header size " + entrySize);
+        }
+        if (entries > 0 && shstrndx >= entries) {
+            throw new ElfException("Invalid section name table index " + shstrndx);
+        }
+        ByteBuffer headers = read(channel, shoff, entrySize * entries).order(header.order());
+
+        ByteBuffer names = null;
+        if (entries > 0) {
+            names = sectionData(channel, headers, shstrndx * entrySize, limits);
+        }
+
+        List<RPXSectionSummary> sections = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) {
+            int pos = i * entrySize;
+            int type = headers.getInt(pos + 4);
+            if (type == ElfSection.SHT_NULL) {
+                continue;
+            }
+            long flags = headers.getInt(pos + 8) & 0xffffffffL;
+            long offset = headers.getInt(pos + 16) & 0xffffffffL;
+            long fileSize = headers.getInt(pos + 20) & 0xffffffffL;
+            long size = fileSize;
+            if ((flags & ElfSection.RPX_SHDR_ZLIB_FLAG) == ElfSection.RPX_SHDR_ZLIB_FLAG) {
+                size = read(channel, offset, 4).order(header.order()).getInt(0) & 0xffffffffL;
+            }
+            sections.add(new RPXSectionSummary(i, name(names, headers.getInt(pos)), type, flags, headers.getInt(pos + 12) & 0xffffffffL, offset,
+                    fileSize, size, headers.getInt(pos + 36) & 0xffffffffL));
+        }
+        return new RPXSummary(header.get(7), header.get(8), header.getShort(16), header.getShort(18), header.getInt(24) & 0xffffffffL,
+                Collections.unmodifiableList(sections));
+    }
+
+    private static String name(ByteBuffer names, int offset) throws ElfException {
+        try {
+            return ElfStrings.decode(names, offset);
+        } catch (IndexOutOfBoundsException e) {
+            throw new ElfException("Invalid section name: " + e.getMessage(), e);
+        }
+    }
+
+    private static ByteBuffer sectionData(FileChannel channel, ByteBuffer headers, int pos, ElfLimits limits) throws IOException {
+        long flags = headers.getInt(pos + 8) & 0xffffffffL;
+        long offset = headers.getInt(pos + 16) & 0xffffffffL;
+        int size = headers.getInt(pos + 20);
+        ByteBuffer data = read(channel, offset, size).order(headers.order());
+        if ((flags & ElfSection.RPX_SHDR_ZLIB_FLAG) != ElfSection.RPX_SHDR_ZLIB_FLAG) {
+            return data;
+        }
+        if (size < 4) {
+            throw new ElfException("Invalid compressed section name table");
+        }
+        int inflatedSize = data.getInt(0);
+        if (inflatedSize < 0 || inflatedSize > limits.maxSectionSize() || (double) inflatedSize / (size - 4) > limits.maxCompressionRatio()) {
+            throw new ElfException("Inflated size " + (inflatedSize & 0xffffffffL) + " of the section name table exceeds the limits");
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data.array(), 4, size - 4);
+            byte[] inflated = new byte[inflatedSize];
+            int n = inflater.inflate(inflated);
+            if (n < inflatedSize) {
+                throw new ElfException("Inflated " + n + " of " + inflatedSize + " bytes of the section name table");
+            }
+            return ByteBuffer.wrap(inflated);
+        } catch (DataFormatException e) {
+            throw new ElfException("Failed to inflate section name table", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        if (length < 0 || position + length > channel.size()) {
+            throw new ElfException("Read of " + (length & 0xffffffffL) + " bytes at " + position + " is outside of the file");
+        }
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                throw new ElfException("Unexpected end of file");
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+}
@@ -0,0 +1,16 @@
+package de.orb.wiiu.rpxparser;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Data;
+
+@Data
+public class RPXScanResult {
+    private final Path path;
+    private final RPXFile file;
+    private final List<ElfSymbol> functionSymbols;
+    private final Map<String, List<RPLImport>> imports;
+    private final List<ElfExport> exports;
+}
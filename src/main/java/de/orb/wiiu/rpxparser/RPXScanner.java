@@ -0,0 +1,174 @@
+package de.orb.wiiu.rpxparser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * Parses all RPX/RPL files below a directory in parallel and passes the function
+ * symbols, imports and exports of each file to a {@link Listener}.
+ * <p>
+ * At most <code>parallelism</code> files are parsed at the same time. The
+ * directory walk waits while all workers are busy, so a slow listener slows down
+ * the scan instead of letting parsed files pile up in memory. Files are memory
+ * mapped and are released once the listener returns and drops its references.
+ */
+public class RPXScanner {
+
+    public interface Listener {
+        /**
+         * Called on a worker thread for each parsed file.
+         */
+        void onFile(RPXScanResult result);
+
+        /**
+         * Called on a worker thread for each file which could not be parsed, or on
+         * the scanning thread for each file or directory which could not be read.
+         * The scan continues with the next file.
+         */
+        default void onError(Path path, ElfException e) {
+        }
+    }
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private Predicate<Path> filter = RPXScanner::isRPX;
+    private ElfLimits limits = ElfLimits.NONE;
+
+    public RPXScanner setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism < 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Selects the files to parse, by default all files ending with .rpx or .rpl.
+     */
+    public RPXScanner setFilter(Predicate<Path> filter) {
+        this.filter = filter;
+        return this;
+    }
+
+    /**
+     * Sets the limits each file is checked against, e.g. <code>new ElfLimits()</code>
+     * when scanning untrusted files. Files exceeding them are passed to
+     * {@link Listener#onError(Path, ElfException)}.
+     */
+    public RPXScanner setLimits(ElfLimits limits) {
+        this.limits = Objects.requireNonNull(limits);
+        return this;
+    }
+
+    public static boolean isRPX(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".rpx") || name.endsWith(".rpl");
+    }
+
+    /**
+     * Scans the directory tree and returns once every file has been passed to the
+     * listener. Files and directories below the root which can not be read are
+     * passed to {@link Listener#onError(Path, ElfException)} and skipped.
+     * 
+     * @throws IOException if the root can not be read.
+     */
+    public void scan(Path root, Listener listener) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        Semaphore permits = new Semaphore(parallelism);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                    if (Files.isRegularFile(path) && filter.test(path)) {
+                        permits.acquireUninterruptibly();
+                        executor.execute(() -> {
+                            try {
+                                process(path, listener);
+                            } catch (RuntimeException e) {
+                                failure.compareAndSet(null, e);
+                            } finally {
+                                permits.release();
+                            }
+                        });
+                    }
+                    return failure.get() == null ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path path, IOException e) throws IOException {
+                    if (path.equals(root)) {
+                        throw e;
+                    }
+                    listener.onError(path, new ElfException(path + ": " + e, e));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                    // the listing of the directory failed after some entries were visited
+                    if (e != null) {
+                        if (dir.equals(root)) {
+                            throw e;
+                        }
+                        listener.onError(dir, new ElfException(dir + ": " + e, e));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } finally {
+            executor.shutdown();
+            awaitTermination(executor);
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private void process(Path path, Listener listener) {
+        RPXScanResult result;
+        try {
+            RPXFile file = RPXFile.map(path.toFile(), limits);
+            result = new RPXScanResult(path, file, file.getFunctionSymbolsText(), file.getImports(), file.getExports());
+        } catch (ElfException e) {
+            listener.onError(path, e);
+            return;
+        } catch (UncheckedIOException e) {
+            IOException cause = e.getCause();
+            listener.onError(path, cause instanceof ElfException ? (ElfException) cause : new ElfException(path + ": " + cause, cause));
+            return;
+        } catch (IOException | RuntimeException e) {
+            listener.onError(path, new ElfException(path + ": " + e, e));
+            return;
+        }
+        listener.onFile(result);
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package de.orb.wiiu.rpxparser;
+
+import lombok.Data;
+
+@Data
+public class RPXSectionSummary {
+    private final int index;
+    private final String name;
+    private final int type;
+    private final long flags;
+    private final long address;
+    private final long offset;
+    /** the size inside the file, may be the size of the compressed data */
+    private final long fileSize;
+    /** the size of the (inflated) section */
+    private final long size;
+    private final long entrySize;
+
+    public boolean isCompressed() {
+        return (flags & ElfSection.RPX_SHDR_ZLIB_FLAG) == ElfSection.RPX_SHDR_ZLIB_FLAG;
+    }
+}
@@ -0,0 +1,43 @@
+package de.orb.wiiu.rpxparser;
+
+import java.util.List;
+import java.util.Optional;
+
+import lombok.Data;
+
+/**
+ * Header information of a RPX/RPL, see {@link RPXProbe}.
+ */
+@Data
+public class RPXSummary {
+    private final byte abi;
+    private final byte abiVersion;
+    private final short type;
+    private final short machine;
+    private final long entry;
+    private final List<RPXSectionSummary> sections;
+
+    public int sectionCount() {
+        return sections.size();
+    }
+
+    public Optional<RPXSectionSummary> section(String name) {
+        return sections.stream().filter(s -> name.equals(s.getName())).findFirst();
+    }
+
+    /**
+     * @return the number of entries in the <code>.symtab</code>.
+     */
+    public int symbolCount() {
+        return section(".symtab").map(s -> s.getEntrySize() == 0 ? 0 : (int) (s.getSize() / s.getEntrySize())).orElse(0);
+    }
+
+    /**
+     * Cheap approximation of {@link RPXFile#hasSymbols()}: true if the symbol table
+     * has more entries than a stripped file usually keeps. Only
+     * {@link RPXFile#hasSymbols()} looks at the symbols themselves.
+     */
+    public boolean hasSymbols() {
+        return symbolCount() > RPXFile.MIN_SYMBOLS;
+    }
+}
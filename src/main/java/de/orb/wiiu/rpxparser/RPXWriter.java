@@ -0,0 +1,413 @@
+package de.orb.wiiu.rpxparser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes Wii U ELF32 big-endian files (RPX/RPL) which can be read with
+ * {@link RPXFile}. Intended to create test and benchmark input, it writes the
+ * sections the parser uses: arbitrary data sections, <code>.symtab</code>,
+ * <code>.strtab</code>, RELA tables, <code>SHT_RPL_IMPORTS</code> and
+ * <code>SHT_RPL_EXPORTS</code>. The loader specific <code>SHT_RPL_CRCS</code>
+ * and <code>SHT_RPL_FILEINFO</code> sections are not written.
+ * 
+ * <pre>
+ * RPXWriter writer = new RPXWriter();
+ * int text = writer.addSection(".text", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_EXECINSTR, 0x02000000, code);
+ * int coreinit = writer.addImportSection("coreinit", false, 0xC0000000L);
+ * int osReport = writer.addImportSymbol(coreinit, "OSReport");
+ * writer.addSymbol("main", 0x02000000, code.length, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+ * writer.addRelocation(text, 0x02000010, ElfRelocation.R_PPC_REL24, osReport, 0);
+ * writer.write(new File("test.rpx"));
+ * </pre>
+ * 
+ * Symbols and relocations are kept in their binary form while they are added,
+ * so files with millions of entries can be created.
+ */
+public class RPXWriter {
+    public static final int SHF_WRITE = 0x1;
+    public static final int SHF_ALLOC = 0x2;
+    public static final int SHF_EXECINSTR = 0x4;
+
+    public static final short ET_RPL = (short) 0xFE01;
+    public static final byte ELFOSABI_CAFE = (byte) 0xCA;
+    public static final byte ELFOSABI_CAFE_VERSION = (byte) 0xFE;
+
+    private static final int ELF_HEADER_SIZE = 52;
+    private static final int SECTION_HEADER_SIZE = 40;
+    private static final int SECTION_HEADER_OFFSET = 0x40;
+    private static final int SECTION_ALIGN = 64;
+
+    private final List<Section> sections = new ArrayList<>();
+    private final ByteArrayOutputStream symtab = new ByteArrayOutputStream();
+    private final DataOutputStream symbols = new DataOutputStream(symtab);
+    private final StringTableBuilder strtab = new StringTableBuilder();
+    private final Map<Integer, ByteArrayOutputStream> relocations = new LinkedHashMap<>();
+    private final List<Export> exports = new ArrayList<>();
+    private boolean compressed;
+    private long entry;
+    private int symbolCount;
+    // index of the first non local symbol, the null symbol is local
+    private int localCount = 1;
+
+    public RPXWriter() {
+        sections.add(new Section(null, ElfSection.SHT_NULL, 0, 0, new byte[0]));
+        try {
+            writeSymbol(0, 0, 0, 0, 0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Compresses the sections with zlib and sets
+     * {@link ElfSection#RPX_SHDR_ZLIB_FLAG}. Import sections are never compressed.
+     */
+    public RPXWriter setCompressed(boolean compressed) {
+        this.compressed = compressed;
+        return this;
+    }
+
+    public RPXWriter setEntry(long entry) {
+        this.entry = entry;
+        return this;
+    }
+
+    /**
+     * @return the index of the new section.
+     */
+    public int addSection(String name, int type, int flags, long address, byte[] data) {
+        sections.add(new Section(name, type, flags, address, data));
+        return sections.size() - 1;
+    }
+
+    /**
+     * Adds a <code>SHT_NOBITS</code> section which has no data in the file.
+     * 
+     * @return the index of the new section.
+     */
+    public int addNoBitsSection(String name, int flags, long address, long size) {
+        Section section = new Section(name, ElfSection.SHT_NOBITS, flags, address, new byte[0]);
+        section.size = size;
+        sections.add(section);
+        return sections.size() - 1;
+    }
+
+    /**
+     * Adds a <code>SHT_RPL_IMPORTS</code> section for the given RPL. Symbols are
+     * added to it with {@link #addImportSymbol(int, String)}.
+     * 
+     * @return the index of the new section.
+     */
+    public int addImportSection(String rplName, boolean data, long address) {
+        Section section = new Section((data ? ".dimport_" : ".fimport_") + rplName, ElfSection.SHT_RPL_IMPORTS, SHF_ALLOC, address, null);
+        section.rplName = rplName;
+        section.importData = data;
+        sections.add(section);
+        return sections.size() - 1;
+    }
+
+    /**
+     * Adds a global symbol in the given import section.
+     * 
+     * @return the index of the new symbol.
+     */
+    public int addImportSymbol(int importSection, String name) {
+        Section section = sections.get(importSection);
+        if (section.type != ElfSection.SHT_RPL_IMPORTS) {
+            throw new IllegalArgumentException("Section " + importSection + " is not an import section");
+        }
+        long value = section.address + 8 + section.importCount * 8L;
+        section.importCount++;
+        return addSymbol(name, value, 0, ElfSymbol.STB_GLOBAL, section.importData ? ElfSymbol.STT_OBJECT : ElfSymbol.STT_FUNC, importSection);
+    }
+
+    /**
+     * Adds a symbol. As required by ELF, local symbols have to be added before all
+     * other symbols.
+     * 
+     * @return the index of the new symbol.
+     */
+    public int addSymbol(String name, long value, long size, byte bind, byte type, int sectionIndex) {
+        if (bind == ElfSymbol.STB_LOCAL) {
+            if (localCount != symbolCount) {
+                throw new IllegalStateException("Local symbol " + name + " added after a non local symbol");
+            }
+            localCount++;
+        }
+        try {
+            writeSymbol(strtab.add(name), value, size, (bind << 4) | (type & 0xf), sectionIndex);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return symbolCount - 1;
+    }
+
+    private void writeSymbol(int nameIndex, long value, long size, int info, int sectionIndex) throws IOException {
+        symbols.writeInt(nameIndex);
+        symbols.writeInt((int) value);
+        symbols.writeInt((int) size);
+        symbols.writeByte(info);
+        symbols.writeByte(0);
+        symbols.writeShort(sectionIndex);
+        symbolCount++;
+    }
+
+    /**
+     * Adds a relocation which is applied to the given section. The relocations of
+     * each section are written to a <code>.rela</code> section.
+     */
+    public void addRelocation(int targetSection, long offset, int type, int symbol, int addend) {
+        ByteArrayOutputStream rela = relocations.computeIfAbsent(targetSection, k -> new ByteArrayOutputStream());
+        byte[] bytes = new byte[12];
+        ByteBuffer.wrap(bytes).putInt((int) offset).putInt((symbol << 8) | (type & 0xff)).putInt(addend);
+        rela.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Adds an entry to the <code>.fexports</code> or <code>.dexports</code>
+     * section.
+     */
+    public void addExport(String name, long address, boolean data) {
+        addExport(name, address, data, false);
+    }
+
+    /**
+     * Adds an export, with the TLS flag set on the name offset for thread local
+     * variables.
+     */
+    public void addExport(String name, long address, boolean data, boolean tls) {
+        exports.add(new Export(name, address, data, tls));
+    }
+
+    public int symbolCount() {
+        return symbolCount;
+    }
+
+    public void write(File file) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            write(out);
+        }
+    }
+
+    public byte[] toByteArray() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out);
+        return out.toByteArray();
+    }
+
+    public void write(OutputStream out) throws IOException {
+        List<Section> all = new ArrayList<>(sections);
+        for (Section section : all) {
+            if (section.type == ElfSection.SHT_RPL_IMPORTS) {
+                section.data = importSectionData(section);
+            }
+        }
+        int symtabIndex = all.size();
+        all.add(new Section(".symtab", ElfSection.SHT_SYMTAB, 0, 0, symtab.toByteArray()));
+        all.get(symtabIndex).link = symtabIndex + 1;
+        all.get(symtabIndex).info = localCount;
+        all.get(symtabIndex).entrySize = 16;
+        all.get(symtabIndex).align = 4;
+        all.add(new Section(".strtab", ElfSection.SHT_STRTAB, 0, 0, strtab.toByteArray()));
+        for (Map.Entry<Integer, ByteArrayOutputStream> rela : relocations.entrySet()) {
+            Section target = sections.get(rela.getKey());
+            Section section = new Section(".rela" + (target.name == null ? "" : target.name), ElfSection.SHT_RELA, 0, 0, rela.getValue().toByteArray());
+            section.link = symtabIndex;
+            section.info = rela.getKey();
+            section.entrySize = 12;
+            section.align = 4;
+            all.add(section);
+        }
+        addExportSection(all, ".fexports", false);
+        addExportSection(all, ".dexports", true);
+        int shstrtabIndex = all.size();
+        all.add(new Section(".shstrtab", ElfSection.SHT_STRTAB, 0, 0, null));
+
+        StringTableBuilder shstrtab = new StringTableBuilder();
+        for (Section section : all) {
+            section.nameIndex = section.name == null ? 0 : shstrtab.add(section.name);
+        }
+        all.get(shstrtabIndex).data = shstrtab.toByteArray();
+
+        List<byte[]> contents = new ArrayList<>(all.size());
+        long offset = align(SECTION_HEADER_OFFSET + all.size() * SECTION_HEADER_SIZE);
+        ByteBuffer headers = ByteBuffer.allocate(SECTION_HEADER_OFFSET - ELF_HEADER_SIZE + all.size() * SECTION_HEADER_SIZE);
+        headers.position(SECTION_HEADER_OFFSET - ELF_HEADER_SIZE);
+        for (Section section : all) {
+            byte[] content = section.data;
+            int flags = section.flags;
+            if (compressed && content.length > 0 && section.type != ElfSection.SHT_RPL_IMPORTS) {
+                content = deflate(content);
+                flags |= ElfSection.RPX_SHDR_ZLIB_FLAG;
+            }
+            boolean hasData = section.type != ElfSection.SHT_NULL && section.type != ElfSection.SHT_NOBITS;
+            headers.putInt(section.nameIndex);
+            headers.putInt(section.type);
+            headers.putInt(flags);
+            headers.putInt((int) section.address);
+            headers.putInt(hasData ? (int) offset : 0);
+            headers.putInt(section.type == ElfSection.SHT_NOBITS ? (int) section.size : content.length);
+            headers.putInt(section.link);
+            headers.putInt(section.info);
+            headers.putInt(section.align);
+            headers.putInt(section.entrySize);
+            if (hasData) {
+                contents.add(content);
+                offset = align(offset + content.length);
+            }
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(ELF_HEADER_SIZE);
+        header.put(new byte[] { 0x7f, 'E', 'L', 'F', 1, 2, 1, ELFOSABI_CAFE, ELFOSABI_CAFE_VERSION, 0, 0, 0, 0, 0, 0, 0 });
+        header.putShort(ET_RPL);
+        header.putShort(ElfReader.EM_PPC);
+        header.putInt(1);
+        header.putInt((int) entry);
+        header.putInt(0); // phoff
+        header.putInt(SECTION_HEADER_OFFSET);
+        header.putInt(0); // flags
+        header.putShort((short) ELF_HEADER_SIZE);
+        header.putShort((short) 0); // phentsize
+        header.putShort((short) 0); // phnum
+        header.putShort((short) SECTION_HEADER_SIZE);
+        header.putShort((short) all.size());
+        header.putShort((short) shstrtabIndex);
+
+        out.write(header.array());
+        out.write(headers.array());
+        long written = ELF_HEADER_SIZE + headers.capacity();
+        byte[] padding = new byte[SECTION_ALIGN];
+        for (byte[] content : contents) {
+            out.write(padding, 0, (int) (align(written) - written));
+            written = align(written);
+            out.write(content);
+            written += content.length;
+        }
+        out.flush();
+    }
+
+    private void addExportSection(List<Section> all, String name, boolean data) {
+        int count = 0;
+        StringTableBuilder names = new StringTableBuilder();
+        for (Export export : exports) {
+            if (export.data == data) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        int namesOffset = 8 + count * 8;
+        ByteBuffer entries = ByteBuffer.allocate(namesOffset);
+        entries.putInt(count);
+        entries.putInt(0); // signature
+        for (Export export : exports) {
+            if (export.data == data) {
+                entries.putInt((int) export.address);
+                entries.putInt((namesOffset + names.add(export.name) - 1) | (export.tls ? 0x80000000 : 0));
+            }
+        }
+        // the names follow the entries directly, without the leading NUL of a string table
+        byte[] nameBytes = names.toByteArray();
+        byte[] content = new byte[namesOffset + nameBytes.length - 1];
+        System.arraycopy(entries.array(), 0, content, 0, namesOffset);
+        System.arraycopy(nameBytes, 1, content, namesOffset, nameBytes.length - 1);
+        all.add(new Section(name, ElfSection.SHT_RPL_EXPORTS, SHF_ALLOC, 0, content));
+    }
+
+    private static byte[] importSectionData(Section section) {
+        byte[] name = section.rplName.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.max(8 + section.importCount * 8L, align(8 + name.length + 1)));
+        buf.putInt(section.importCount);
+        buf.putInt(0); // signature
+        buf.put(name);
+        return buf.array();
+    }
+
+    private static byte[] deflate(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+        new DataOutputStream(out).writeInt(data.length);
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+            deflater.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static long align(long offset) {
+        return (offset + SECTION_ALIGN - 1) & -SECTION_ALIGN;
+    }
+
+    private static class Section {
+        final String name;
+        final int type;
+        final int flags;
+        final long address;
+        byte[] data;
+        long size;
+        int nameIndex;
+        int link;
+        int info;
+        int align = 32;
+        int entrySize;
+        String rplName;
+        boolean importData;
+        int importCount;
+
+        Section(String name, int type, int flags, long address, byte[] data) {
+            this.name = name;
+            this.type = type;
+            this.flags = flags;
+            this.address = address;
+            this.data = data;
+        }
+    }
+
+    private static class Export {
+        final String name;
+        final long address;
+        final boolean data;
+        final boolean tls;
+
+        Export(String name, long address, boolean data, boolean tls) {
+            this.name = name;
+            this.address = address;
+            this.data = data;
+            this.tls = tls;
+        }
+    }
+
+    private static class StringTableBuilder {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        StringTableBuilder() {
+            out.write(0);
+        }
+
+        int add(String s) {
+            if (s == null || s.isEmpty()) {
+                return 0;
+            }
+            int offset = out.size();
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.write(bytes, 0, bytes.length);
+            out.write(0);
+            return offset;
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+}
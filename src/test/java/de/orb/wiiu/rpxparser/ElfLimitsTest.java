@@ -0,0 +1,132 @@
+package de.orb.wiiu.rpxparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class ElfLimitsTest {
+
+    private static final int TEXT = 1;
+    private static final int DATA = 2;
+    private static final int SYMTAB = 3;
+    private static final int RELA_TEXT = 5;
+
+    private static byte[] rpx(boolean compressed, int textSize) throws Exception {
+        RPXWriter writer = new RPXWriter().setCompressed(compressed);
+        int text = writer.addSection(".text", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_EXECINSTR, 0x02000000L, new byte[textSize]);
+        int data = writer.addSection(".data", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_WRITE, 0x10000000L, new byte[0x100]);
+        writer.addSymbol("main", 0x02000000L, 0x10, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        writer.addSymbol("other", 0x02000010L, 0x10, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        writer.addSymbol("counter", 0x10000000L, 4, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_OBJECT, data);
+        writer.addRelocation(text, 0x02000000L, ElfRelocation.R_PPC_REL24, 2, 0);
+        byte[] bytes = writer.toByteArray();
+        // the indices used by the tests
+        ElfReader reader = new ElfReader(ByteBuffer.wrap(bytes));
+        assertEquals(".text", reader.section(TEXT).get().name());
+        assertEquals(".data", reader.section(DATA).get().name());
+        assertEquals(".symtab", reader.section(SYMTAB).get().name());
+        assertEquals(".rela.text", reader.section(RELA_TEXT).get().name());
+        return bytes;
+    }
+
+    /**
+     * Overwrites a field of a section header, see the offsets in
+     * {@link ElfSection}.
+     */
+    private static byte[] patch(byte[] bytes, int section, int field, int value) {
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        buf.putInt(buf.getInt(32) + section * 40 + field, value);
+        return bytes;
+    }
+
+    private static ElfReader open(byte[] bytes, ElfLimits limits) throws Exception {
+        return new ElfReader(ElfSource.of(ByteBuffer.wrap(bytes)), limits);
+    }
+
+    private static void assertRejected(byte[] bytes, ElfLimits limits, int section, String name) throws Exception {
+        try {
+            open(bytes, limits);
+            fail("accepted with " + limits);
+        } catch (ElfSectionException e) {
+            assertEquals(section, e.sectionIndex());
+            assertEquals(name, e.sectionName());
+        }
+    }
+
+    @Test
+    public void maxSectionSize() throws Exception {
+        byte[] bytes = rpx(false, 0x200);
+        assertRejected(bytes, new ElfLimits().withMaxSectionSize(0x1ff), TEXT, ".text");
+        open(bytes, new ElfLimits().withMaxSectionSize(0x200));
+        open(bytes, ElfLimits.NONE);
+    }
+
+    @Test
+    public void maxSectionSizeOfCompressedSection() throws Exception {
+        // the inflated size is checked, not the size in the file
+        byte[] bytes = rpx(true, 0x200);
+        assertRejected(bytes, new ElfLimits().withMaxSectionSize(0x1ff), TEXT, ".text");
+        open(bytes, ElfLimits.NONE);
+    }
+
+    @Test
+    public void maxTotalInflatedSize() throws Exception {
+        byte[] bytes = rpx(true, 0x200);
+        // .text fits, .text and .data do not
+        assertRejected(bytes, ElfLimits.NONE.withMaxTotalInflatedSize(0x2ff), DATA, ".data");
+        open(bytes, ElfLimits.NONE);
+    }
+
+    @Test
+    public void maxSymbolCount() throws Exception {
+        byte[] bytes = rpx(false, 0x200);
+        // three symbols and the null symbol
+        assertRejected(bytes, new ElfLimits().withMaxSymbolCount(3), SYMTAB, ".symtab");
+        open(bytes, new ElfLimits().withMaxSymbolCount(4));
+        open(bytes, ElfLimits.NONE);
+    }
+
+    @Test
+    public void maxCompressionRatio() throws Exception {
+        // a megabyte of zeros deflates to about a kilobyte
+        byte[] bytes = rpx(true, 1 << 20);
+        assertRejected(bytes, new ElfLimits(), TEXT, ".text");
+        open(bytes, new ElfLimits().withMaxCompressionRatio(10_000));
+        open(bytes, ElfLimits.NONE);
+    }
+
+    @Test
+    public void compressedDataTooShort() throws Exception {
+        assertRejected(patch(rpx(true, 0x200), TEXT, 20, 2), ElfLimits.NONE, TEXT, ".text");
+    }
+
+    @Test
+    public void dataOutsideOfFile() throws Exception {
+        byte[] bytes = rpx(false, 0x200);
+        assertRejected(patch(bytes.clone(), DATA, 16, bytes.length - 0x80), ElfLimits.NONE, DATA, ".data");
+        assertRejected(patch(bytes.clone(), DATA, 20, bytes.length), ElfLimits.NONE, DATA, ".data");
+    }
+
+    @Test
+    public void invalidEntrySize() throws Exception {
+        byte[] bytes = rpx(false, 0x200);
+        assertRejected(patch(bytes.clone(), SYMTAB, 36, 8), ElfLimits.NONE, SYMTAB, ".symtab");
+        assertRejected(patch(bytes.clone(), RELA_TEXT, 36, 8), ElfLimits.NONE, RELA_TEXT, ".rela.text");
+    }
+
+    @Test
+    public void invalidLink() throws Exception {
+        byte[] bytes = rpx(false, 0x200);
+        assertRejected(patch(bytes.clone(), DATA, 24, 1000), ElfLimits.NONE, DATA, ".data");
+        assertRejected(patch(bytes.clone(), DATA, 24, -1), ElfLimits.NONE, DATA, ".data");
+        // a symbol table linked to something else than a string table
+        assertRejected(patch(bytes.clone(), SYMTAB, 24, TEXT), ElfLimits.NONE, SYMTAB, ".symtab");
+        // a relocation table linked to something else than a symbol table
+        assertRejected(patch(bytes.clone(), RELA_TEXT, 24, TEXT), ElfLimits.NONE, RELA_TEXT, ".rela.text");
+        // a relocation table for a section which does not exist
+        assertRejected(patch(bytes.clone(), RELA_TEXT, 28, 1000), ElfLimits.NONE, RELA_TEXT, ".rela.text");
+    }
+}
@@ -0,0 +1,66 @@
+package de.orb.wiiu.rpxparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ElfParseMetricsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] rpx(boolean compressed) throws Exception {
+        RPXWriter writer = new RPXWriter().setCompressed(compressed);
+        int text = writer.addSection(".text", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_EXECINSTR, 0x02000000L, new byte[0x100]);
+        writer.addSymbol("main", 0x02000000L, 0x100, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        return writer.toByteArray();
+    }
+
+    @Test
+    public void headerReads() throws Exception {
+        Path file = Files.write(folder.getRoot().toPath().resolve("a.rpx"), rpx(true));
+        ElfParseMetrics metrics = new ElfParseMetrics();
+        try (SeekableByteChannel channel = Files.newByteChannel(file); ElfReader reader = new ElfReader(ElfSource.of(channel), ElfLimits.NONE, metrics)) {
+            // ELF header, section headers and the inflated size of every compressed section
+            long compressed = reader.sections().filter(ElfSection::isCompressed).count();
+            assertTrue(compressed > 0);
+            assertEquals(2 + compressed, metrics.headerReads());
+            // the section names were read while the reader was created
+            assertTrue(metrics.sectionReads() > 0);
+            assertTrue(metrics.bytesRead() > 52);
+        }
+    }
+
+    @Test
+    public void bufferedSectionsHaveNoEvents() throws Exception {
+        ElfParseMetrics metrics = new ElfParseMetrics();
+        ElfReader reader = new ElfReader(ElfSource.of(ByteBuffer.wrap(rpx(false))), ElfLimits.NONE, metrics);
+        reader.section(".text").get().getSectionBuffer();
+        assertEquals(0, metrics.headerReads());
+        assertEquals(0, metrics.sectionReads());
+        assertEquals(0, metrics.cacheHits() + metrics.cacheMisses());
+    }
+
+    @Test
+    public void cacheEvents() throws Exception {
+        ElfParseMetrics metrics = new ElfParseMetrics();
+        RPXFile file = new RPXFile(new ElfReader(ElfSource.of(ByteBuffer.wrap(rpx(true))), ElfLimits.NONE, metrics));
+        metrics.reset();
+        file.getFunctionSymbolsText();
+        long misses = metrics.cacheMisses();
+        assertTrue(misses > 0);
+        assertEquals(misses, metrics.inflations());
+        file.getFunctionSymbolsText();
+        assertEquals(misses, metrics.cacheMisses());
+        assertTrue(metrics.cacheHits() > 0);
+        assertEquals(1 * 2, metrics.symbols());
+    }
+}
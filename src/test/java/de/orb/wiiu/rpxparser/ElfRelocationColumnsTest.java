@@ -0,0 +1,53 @@
+package de.orb.wiiu.rpxparser;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ElfRelocationColumnsTest {
+
+    private static ElfRelocationColumns columns(long... offsets) throws Exception {
+        RPXWriter writer = new RPXWriter();
+        int text = writer.addSection(".text", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_EXECINSTR, 0x02000000L, new byte[16]);
+        writer.addSymbol("main", 0x02000000L, 16, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        for (int i = 0; i < offsets.length; i++) {
+            // the addend records the original position
+            writer.addRelocation(text, offsets[i], i % 2 == 0 ? ElfRelocation.R_PPC_REL24 : ElfRelocation.R_PPC_ADDR16_HA, 1, i);
+        }
+        ElfReader reader = new ElfReader(ByteBuffer.wrap(writer.toByteArray()));
+        return ((ElfRelocationTable) reader.sections(ElfSection.SHT_RELA).get(0)).columns();
+    }
+
+    @Test
+    public void sortedByOffsetIsUnsigned() throws Exception {
+        ElfRelocationColumns sorted = columns(0x80000000L, 0x00000004L, 0xfffffffcL, 0x7ffffffcL, 0x00000000L).sortedByOffset();
+        assertEquals(5, sorted.count());
+        assertEquals(0x00000000L, sorted.offset(0));
+        assertEquals(0x00000004L, sorted.offset(1));
+        assertEquals(0x7ffffffcL, sorted.offset(2));
+        assertEquals(0x80000000L, sorted.offset(3));
+        assertEquals(0xfffffffcL, sorted.offset(4));
+        assertArrayEquals(new int[] { 4, 1, 3, 0, 2 }, sorted.addends());
+    }
+
+    @Test
+    public void sortedByOffsetIsStable() throws Exception {
+        ElfRelocationColumns sorted = columns(0x90000000L, 0x10L, 0x90000000L, 0x10L, 0x90000000L).sortedByOffset();
+        assertArrayEquals(new int[] { 1, 3, 0, 2, 4 }, sorted.addends());
+        assertArrayEquals(new int[] { ElfRelocation.R_PPC_ADDR16_HA, ElfRelocation.R_PPC_ADDR16_HA, ElfRelocation.R_PPC_REL24,
+                ElfRelocation.R_PPC_REL24, ElfRelocation.R_PPC_REL24 }, sorted.types());
+    }
+
+    @Test
+    public void typeHistogram() throws Exception {
+        int[] histogram = columns(0, 4, 8, 12, 16).typeHistogram();
+        assertEquals(256, histogram.length);
+        assertEquals(3, histogram[ElfRelocation.R_PPC_REL24]);
+        assertEquals(2, histogram[ElfRelocation.R_PPC_ADDR16_HA]);
+        assertEquals(5, Arrays.stream(histogram).sum());
+    }
+}
@@ -0,0 +1,74 @@
+package de.orb.wiiu.rpxparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class ElfSectionTest {
+
+    private static final int SIZE = 0x100;
+
+    private static byte[] code() {
+        byte[] code = new byte[SIZE];
+        for (int i = 0; i < code.length; i++) {
+            code[i] = (byte) i;
+        }
+        return code;
+    }
+
+    /**
+     * @param extra bytes the inflated size in the section claims beyond the
+     *            compressed data.
+     */
+    private static ElfReader reader(int extra, boolean streaming) throws Exception {
+        RPXWriter writer = new RPXWriter().setCompressed(true);
+        writer.addSection(".text", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_EXECINSTR, 0x02000000L, code());
+        ByteBuffer file = ByteBuffer.wrap(writer.toByteArray());
+        int header = file.getInt(32) + 1 * (file.getShort(46) & 0xffff);
+        int offset = file.getInt(header + 16);
+        file.putInt(offset, file.getInt(offset) + extra);
+        ElfReader reader = new ElfReader(file);
+        reader.setStreamingInflation(streaming);
+        return reader;
+    }
+
+    private static void assertTruncated(ElfReader reader, long minSize) {
+        ElfSection text = reader.section(".text").get();
+        try {
+            text.getSectionBuffer(minSize);
+            fail("truncated section accepted");
+        } catch (UncheckedIOException e) {
+            assertTrue(e.getCause() instanceof ElfSectionException);
+        }
+    }
+
+    @Test
+    public void partialInflation() throws Exception {
+        ElfSection text = reader(0, true).section(".text").get();
+        assertTrue(text.getSectionBuffer(4).remaining() >= 4);
+        ByteBuffer buf = text.getSectionBuffer();
+        assertEquals(SIZE, buf.remaining());
+        assertEquals((byte) 0xff, buf.get(SIZE - 1));
+    }
+
+    @Test
+    public void truncatedSection() throws Exception {
+        assertTruncated(reader(16, false), SIZE);
+    }
+
+    @Test
+    public void truncatedSectionStreaming() throws Exception {
+        // the stream ends past the requested bytes but before the section does
+        assertTruncated(reader(16, true), 4);
+    }
+
+    @Test
+    public void truncatedSectionStreamingFullSize() throws Exception {
+        assertTruncated(reader(16, true), SIZE + 16);
+    }
+}
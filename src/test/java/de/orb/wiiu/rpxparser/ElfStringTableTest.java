@@ -0,0 +1,56 @@
+package de.orb.wiiu.rpxparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class ElfStringTableTest {
+
+    private static final int COUNT = 1000;
+
+    private static ElfReader reader() throws Exception {
+        RPXWriter writer = new RPXWriter();
+        int text = writer.addSection(".text", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_EXECINSTR, 0x02000000L, new byte[16]);
+        for (int i = 0; i < COUNT; i++) {
+            writer.addSymbol("function_" + i, 0x02000000L, 4, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        }
+        writer.addSymbol("fünf", 0x02000000L, 4, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        return new ElfReader(ByteBuffer.wrap(writer.toByteArray()));
+    }
+
+    private static String name(ElfReader reader, int symbol) {
+        ElfSymbolTable symtab = (ElfSymbolTable) reader.section(".symtab").get();
+        ElfStringTable strtab = (ElfStringTable) symtab.link().get();
+        ElfSymbolCursor cursor = symtab.cursor();
+        cursor.moveTo(symbol);
+        return strtab.string(cursor.nameIndex());
+    }
+
+    @Test
+    public void cached() throws Exception {
+        ElfReader reader = reader();
+        for (int i = 1; i <= COUNT; i++) {
+            assertEquals("function_" + (i - 1), name(reader, i));
+        }
+        for (int i = 1; i <= COUNT; i++) {
+            assertSame(name(reader, i), name(reader, i));
+        }
+    }
+
+    @Test
+    public void uncached() throws Exception {
+        ElfReader reader = reader();
+        reader.setCacheStrings(false);
+        assertEquals("function_0", name(reader, 1));
+        assertNotSame(name(reader, 1), name(reader, 1));
+    }
+
+    @Test
+    public void utf8() throws Exception {
+        assertEquals("fünf", name(reader(), COUNT + 1));
+    }
+}
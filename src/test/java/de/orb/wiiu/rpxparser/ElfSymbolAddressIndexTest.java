@@ -0,0 +1,91 @@
+package de.orb.wiiu.rpxparser;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ElfSymbolAddressIndexTest {
+
+    private static final long TEXT = 0x02000000L;
+
+    private static RPXWriter writer() {
+        return new RPXWriter();
+    }
+
+    private static int text(RPXWriter writer) {
+        return writer.addSection(".text", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_EXECINSTR, TEXT, new byte[0x100]);
+    }
+
+    private static ElfSymbolTable read(RPXWriter writer) throws Exception {
+        return new RPXFile(writer.toByteArray()).getSymbolTable().get();
+    }
+
+    private static String nameAt(ElfSymbolTable table, long address) {
+        return table.addressIndex().symbolAt(address).map(s -> s.name().get()).orElse(null);
+    }
+
+    @Test
+    public void nestedSymbols() throws Exception {
+        RPXWriter writer = writer();
+        int text = text(writer);
+        writer.addSymbol("outer", TEXT, 0x100, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        writer.addSymbol("inner", TEXT + 0x10, 0x10, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        writer.addSymbol("innermost", TEXT + 0x14, 4, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        ElfSymbolTable table = read(writer);
+
+        assertEquals("outer", nameAt(table, TEXT));
+        assertEquals("inner", nameAt(table, TEXT + 0x10));
+        assertEquals("innermost", nameAt(table, TEXT + 0x14));
+        // past the nested symbols but still inside the enclosing one
+        assertEquals("inner", nameAt(table, TEXT + 0x18));
+        assertEquals("outer", nameAt(table, TEXT + 0x20));
+        assertEquals("outer", nameAt(table, TEXT + 0xfc));
+        assertEquals(null, nameAt(table, TEXT + 0x100));
+        assertEquals(null, nameAt(table, TEXT - 4));
+    }
+
+    @Test
+    public void equalStarts() throws Exception {
+        RPXWriter writer = writer();
+        int text = text(writer);
+        writer.addSymbol("empty", TEXT, 0, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        writer.addSymbol("short", TEXT, 8, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        writer.addSymbol("long", TEXT, 0x20, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        writer.addSymbol("alias", TEXT, 0x20, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        ElfSymbolTable table = read(writer);
+
+        assertEquals("short", nameAt(table, TEXT));
+        assertEquals("short", nameAt(table, TEXT + 4));
+        // the first of two symbols with the same range
+        assertEquals("long", nameAt(table, TEXT + 8));
+        assertEquals(null, nameAt(table, TEXT + 0x20));
+    }
+
+    @Test
+    public void highAddresses() throws Exception {
+        RPXWriter writer = writer();
+        int data = writer.addSection(".data", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_WRITE, 0x10000000L, new byte[0x10]);
+        int high = writer.addSection(".high", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_WRITE, 0xc0000000L, new byte[0x10]);
+        writer.addSymbol("low", 0x10000000L, 0x10, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_OBJECT, data);
+        writer.addSymbol("high", 0xc0000000L, 0x10, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_OBJECT, high);
+        ElfSymbolTable table = read(writer);
+
+        assertEquals("low", nameAt(table, 0x10000004L));
+        assertEquals("high", nameAt(table, 0xc0000004L));
+    }
+
+    @Test
+    public void batch() throws Exception {
+        RPXWriter writer = writer();
+        int text = text(writer);
+        int outer = writer.addSymbol("outer", TEXT, 0x100, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        int inner = writer.addSymbol("inner", TEXT + 0x10, 0x10, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        ElfSymbolTable table = read(writer);
+
+        long[] addresses = { TEXT - 4, TEXT, TEXT + 0x10, TEXT + 0x20, TEXT + 0x100 };
+        int[] result = new int[addresses.length];
+        table.addressIndex().indicesOf(addresses, result);
+        assertArrayEquals(new int[] { -1, outer, inner, outer, -1 }, result);
+    }
+}
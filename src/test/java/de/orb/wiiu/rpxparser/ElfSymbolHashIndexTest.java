@@ -0,0 +1,74 @@
+package de.orb.wiiu.rpxparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class ElfSymbolHashIndexTest {
+
+    private static ElfSymbolTable symbolTable() throws Exception {
+        RPXWriter writer = new RPXWriter();
+        int text = writer.addSection(".text", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_EXECINSTR, 0x02000000L, new byte[16]);
+        writer.addSymbol("first", 0x02000000L, 8, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        writer.addSymbol("second", 0x02000008L, 8, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        return new RPXFile(writer.toByteArray()).getSymbolTable().get();
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        ElfSymbolTable table = symbolTable();
+        ElfSymbolHashIndex index = ElfSymbolHashIndex.read(table, ElfSymbolHashIndex.build(table).toHashSection());
+        assertEquals("second", table.symbol(index.indexOf("second")).name().get());
+        assertEquals(-1, index.indexOf("missing"));
+    }
+
+    @Test
+    public void cyclicChainIsRejected() throws Exception {
+        ElfSymbolTable table = symbolTable();
+        int nchain = table.count();
+        ByteBuffer buf = ByteBuffer.allocate(8 + 4 * (1 + nchain)).order(table.reader.endian());
+        buf.putInt(1).putInt(nchain);
+        buf.putInt(1);
+        for (int i = 0; i < nchain; i++) {
+            // chains[1] == 1
+            buf.putInt(i == 1 ? 1 : 0);
+        }
+        buf.flip();
+        try {
+            ElfSymbolHashIndex.read(table, buf);
+            fail("cyclic hash chain accepted");
+        } catch (ElfException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void oversizedBucketCountIsRejected() throws Exception {
+        ElfSymbolTable table = symbolTable();
+        int nchain = table.count();
+        // 0x7ffffff0 + nchain overflows an int
+        ByteBuffer buf = ByteBuffer.allocate(8 + 4 * nchain).order(table.reader.endian());
+        buf.putInt(0x7ffffff0).putInt(nchain);
+        buf.rewind();
+        try {
+            ElfSymbolHashIndex.read(table, buf);
+            fail("oversized bucket count accepted");
+        } catch (ElfException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void truncatedSectionIsRejected() throws Exception {
+        ElfSymbolTable table = symbolTable();
+        try {
+            ElfSymbolHashIndex.read(table, ByteBuffer.allocate(4));
+            fail("truncated hash section accepted");
+        } catch (ElfException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package de.orb.wiiu.rpxparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class FunctionCallGraphBuilderTest {
+
+    private static final int BLR = 0x4E800020;
+
+    private static int branch(long from, long to, boolean link) {
+        return 0x48000000 | (int) ((to - from) & 0x03fffffc) | (link ? 1 : 0);
+    }
+
+    private static FunctionCallGraph build(long textAddress) throws Exception {
+        long first = textAddress;
+        long second = textAddress + 0x10;
+        long third = textAddress + 0x20;
+        ByteBuffer code = ByteBuffer.allocate(0x30);
+        // first: bl second, bl import, blr
+        code.putInt(branch(first, second, true));
+        code.putInt(0x48000001);
+        code.putInt(BLR).putInt(BLR);
+        // second: bl first, b third
+        code.putInt(branch(second, first, true));
+        code.putInt(branch(second + 4, third, false));
+        code.putInt(BLR).putInt(BLR);
+        // third: b +8 inside itself is no call, blr
+        code.putInt(branch(third, third + 8, false));
+        code.putInt(BLR).putInt(BLR).putInt(BLR);
+
+        RPXWriter writer = new RPXWriter();
+        int text = writer.addSection(".text", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_EXECINSTR, textAddress, code.array());
+        int coreinit = writer.addImportSection("coreinit", false, 0xc0000000L);
+        writer.addSymbol("first", first, 0x10, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        writer.addSymbol("second", second, 0x10, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        writer.addSymbol("third", third, 0x10, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        int osReport = writer.addImportSymbol(coreinit, "OSReport");
+        writer.addRelocation(text, first + 4, ElfRelocation.R_PPC_REL24, osReport, 0);
+        return new FunctionCallGraphBuilder(new ElfReader(ByteBuffer.wrap(writer.toByteArray()))).build();
+    }
+
+    private static void check(FunctionCallGraph graph, long textAddress) {
+        assertEquals(3, graph.count());
+        int first = graph.indexOf(textAddress);
+        int second = graph.indexOf(textAddress + 0x10);
+        int third = graph.indexOf(textAddress + 0x20);
+        assertEquals(0, first);
+        assertEquals(1, second);
+        assertEquals(2, third);
+        assertEquals(4, graph.edgeCount());
+
+        assertEquals(2, graph.calleeCount(first));
+        int edge = graph.edgeStart(first);
+        assertEquals(second, graph.callee(edge));
+        assertEquals(textAddress, graph.callSite(edge));
+        assertTrue(graph.isCall(edge));
+        int call = graph.callee(edge + 1);
+        assertTrue(FunctionCallGraph.isImport(call));
+        assertEquals(new RPLImport("OSReport", "coreinit"), graph.importOf(call));
+
+        assertEquals(2, graph.calleeCount(second));
+        edge = graph.edgeStart(second);
+        assertEquals(first, graph.callee(edge));
+        assertEquals(third, graph.callee(edge + 1));
+        assertFalse(graph.isCall(edge + 1));
+
+        assertEquals(0, graph.calleeCount(third));
+    }
+
+    @Test
+    public void callGraph() throws Exception {
+        check(build(0x02000000L), 0x02000000L);
+    }
+
+    @Test
+    public void functionsAboveTwoGigabytes() throws Exception {
+        // the functions straddle 0x80000000
+        check(build(0x7ffffff0L), 0x7ffffff0L);
+    }
+}
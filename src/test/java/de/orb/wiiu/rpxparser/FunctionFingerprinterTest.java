@@ -0,0 +1,59 @@
+package de.orb.wiiu.rpxparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class FunctionFingerprinterTest {
+
+    /**
+     * A function at <code>address</code> with two calls to an import which are
+     * both patched by relocations. Only the branch displacements depend on
+     * <code>displacement</code>.
+     */
+    private static FunctionFingerprints fingerprint(long address, int displacement) throws Exception {
+        long textAddress = address - 0x10;
+        ByteBuffer code = ByteBuffer.allocate(0x30);
+        code.position(0x10);
+        code.putInt(0x48000001 | displacement).putInt(0x48000001 | displacement);
+        code.putInt(0x4E800020);
+
+        RPXWriter writer = new RPXWriter();
+        int text = writer.addSection(".text", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_EXECINSTR, textAddress, code.array());
+        int coreinit = writer.addImportSection("coreinit", false, 0xc0000000L);
+        writer.addSymbol("function", address, 12, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        int osReport = writer.addImportSymbol(coreinit, "OSReport");
+        writer.addRelocation(text, address, ElfRelocation.R_PPC_REL24, osReport, 0);
+        writer.addRelocation(text, address + 4, ElfRelocation.R_PPC_REL24, osReport, 0);
+        FunctionFingerprints fingerprints = new FunctionFingerprinter(new ElfReader(ByteBuffer.wrap(writer.toByteArray()))).fingerprint();
+        assertEquals(1, fingerprints.count());
+        assertEquals(address, fingerprints.address(0));
+        return fingerprints;
+    }
+
+    private static void check(long address) throws Exception {
+        FunctionFingerprints a = fingerprint(address, 0x100);
+        FunctionFingerprints b = fingerprint(address, 0x2000);
+        assertNotEquals(a.hash(0), b.hash(0));
+        assertEquals(a.maskedHash(0), b.maskedHash(0));
+    }
+
+    @Test
+    public void relocationsAreMasked() throws Exception {
+        check(0x02000000L);
+    }
+
+    @Test
+    public void relocationsAreMaskedInHighSections() throws Exception {
+        check(0x90000000L);
+    }
+
+    @Test
+    public void relocationsAreMaskedAcrossSignBoundary() throws Exception {
+        // the second call is at 0x80000000
+        check(0x7ffffffcL);
+    }
+}
@@ -0,0 +1,120 @@
+package de.orb.wiiu.rpxparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PPCDecoderTest {
+
+    private static final long ADDRESS = 0x02000100L;
+
+    @Test
+    public void bl() {
+        int insn = 0x48000101; // bl +0x100
+        assertEquals("b", PPCDecoder.mnemonic(insn));
+        assertTrue(PPCDecoder.isBranch(insn));
+        assertTrue(PPCDecoder.isLink(insn));
+        assertTrue(PPCDecoder.isCall(insn));
+        assertFalse(PPCDecoder.isAbsolute(insn));
+        assertEquals(ADDRESS + 0x100, PPCDecoder.branchTarget(insn, ADDRESS));
+    }
+
+    @Test
+    public void b() {
+        int insn = 0x4BFFFFF8; // b -8
+        assertTrue(PPCDecoder.isBranch(insn));
+        assertFalse(PPCDecoder.isCall(insn));
+        assertEquals(ADDRESS - 8, PPCDecoder.branchTarget(insn, ADDRESS));
+        // the displacement wraps around the 32 bit address space
+        assertEquals(0xfffffff8L, PPCDecoder.branchTarget(insn, 0));
+    }
+
+    @Test
+    public void ba() {
+        int insn = 0x48001002; // ba 0x1000
+        assertTrue(PPCDecoder.isAbsolute(insn));
+        assertFalse(PPCDecoder.isLink(insn));
+        assertEquals(0x1000L, PPCDecoder.branchTarget(insn, ADDRESS));
+        int bla = 0x4BFFF003; // bla -0x1000
+        assertTrue(PPCDecoder.isCall(bla));
+        assertEquals(0xfffff000L, PPCDecoder.branchTarget(bla, ADDRESS));
+    }
+
+    @Test
+    public void bc() {
+        int insn = 0x40820010; // bne +0x10
+        assertEquals("bc", PPCDecoder.mnemonic(insn));
+        assertTrue(PPCDecoder.isConditionalBranch(insn));
+        assertFalse(PPCDecoder.isBranch(insn));
+        assertEquals(4, PPCDecoder.bo(insn));
+        assertEquals(2, PPCDecoder.bi(insn));
+        assertEquals(ADDRESS + 0x10, PPCDecoder.branchTarget(insn, ADDRESS));
+        assertEquals(ADDRESS - 0x10, PPCDecoder.branchTarget(0x4082FFF0, ADDRESS));
+    }
+
+    @Test
+    public void indirectBranches() {
+        int blr = 0x4E800020;
+        assertEquals("bclr", PPCDecoder.mnemonic(blr));
+        assertTrue(PPCDecoder.isIndirectBranch(blr));
+        assertFalse(PPCDecoder.isLink(blr));
+        int bctrl = 0x4E800421;
+        assertEquals("bcctr", PPCDecoder.mnemonic(bctrl));
+        assertTrue(PPCDecoder.isIndirectBranch(bctrl));
+        assertTrue(PPCDecoder.isLink(bctrl));
+        assertFalse(PPCDecoder.isCall(bctrl));
+    }
+
+    @Test
+    public void pairedSingles() {
+        assertEquals("ps_add", PPCDecoder.mnemonic(0x1022182A)); // ps_add f1, f2, f3
+        assertEquals("ps_mr", PPCDecoder.mnemonic(0x10201090)); // ps_mr f1, f2
+        assertEquals("ps_madd", PPCDecoder.mnemonic(0x1000003A));
+        assertFalse(PPCDecoder.isRecord(0x1000003A));
+        assertTrue(PPCDecoder.isRecord(0x1000003B)); // ps_madd.
+        assertEquals("psq_l", PPCDecoder.mnemonic(0xE0000000));
+        assertEquals("psq_st", PPCDecoder.mnemonic(0xF0000000));
+        assertEquals("psq_lx", PPCDecoder.mnemonic(0x1000000C));
+        // the indexed forms ignore the W and I fields in the upper bits
+        assertEquals("psq_lx", PPCDecoder.mnemonic(0x1000040C));
+        assertEquals("psq_stux", PPCDecoder.mnemonic(0x1000004E));
+    }
+
+    @Test
+    public void xoForms() {
+        int add = 0x7C642A14; // add r3, r4, r5
+        assertEquals("add", PPCDecoder.mnemonic(add));
+        assertEquals(3, PPCDecoder.rD(add));
+        assertEquals(4, PPCDecoder.rA(add));
+        assertEquals(5, PPCDecoder.rB(add));
+        assertFalse(PPCDecoder.isRecord(add));
+        assertEquals("add", PPCDecoder.mnemonic(add | 0x400)); // addo
+        assertTrue(PPCDecoder.isRecord(add | 1)); // add.
+        assertEquals("add", PPCDecoder.mnemonic(add | 0x401)); // addo.
+        assertEquals("divw", PPCDecoder.mnemonic(0x7C6323D6)); // divw r3, r3, r4
+        assertEquals("divw", PPCDecoder.mnemonic(0x7C6327D6)); // divwo r3, r3, r4
+        // only the arithmetic forms have an OE bit
+        assertNull(PPCDecoder.mnemonic(0x7C632278 | 0x400)); // xor r3, r3, r4 with bit 21 set
+    }
+
+    @Test
+    public void fields() {
+        int addi = 0x3861FFF8; // addi r3, r1, -8
+        assertEquals("addi", PPCDecoder.mnemonic(addi));
+        assertEquals(-8, PPCDecoder.simm(addi));
+        assertEquals(0xfff8, PPCDecoder.uimm(addi));
+        int mflr = 0x7C6802A6; // mfspr r3, LR
+        assertEquals("mfspr", PPCDecoder.mnemonic(mflr));
+        assertEquals(8, PPCDecoder.spr(mflr));
+    }
+
+    @Test
+    public void invalid() {
+        assertNull(PPCDecoder.mnemonic(0));
+        assertFalse(PPCDecoder.isValid(0));
+        assertTrue(PPCDecoder.isValid(0x60000000)); // nop
+    }
+}
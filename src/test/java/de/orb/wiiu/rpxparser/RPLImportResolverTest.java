@@ -0,0 +1,77 @@
+package de.orb.wiiu.rpxparser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class RPLImportResolverTest {
+
+    private static final long TEXT = 0x02000000L;
+
+    /**
+     * A file importing OSReport through two symbol table entries in two import
+     * sections of coreinit, and GX2Init once.
+     */
+    private static RPXFile importer() throws Exception {
+        RPXWriter writer = new RPXWriter();
+        int text = writer.addSection(".text", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_EXECINSTR, TEXT, new byte[0x10]);
+        int coreinit = writer.addImportSection("coreinit", false, 0xc0000000L);
+        int coreinitAgain = writer.addImportSection("coreinit", false, 0xc0001000L);
+        int gx2 = writer.addImportSection("gx2", false, 0xc0002000L);
+        int first = writer.addImportSymbol(coreinit, "OSReport");
+        int second = writer.addImportSymbol(coreinitAgain, "OSReport");
+        int gx2Init = writer.addImportSymbol(gx2, "GX2Init");
+        writer.addRelocation(text, TEXT, ElfRelocation.R_PPC_REL24, first, 0);
+        writer.addRelocation(text, TEXT + 4, ElfRelocation.R_PPC_REL24, second, 0);
+        writer.addRelocation(text, TEXT + 8, ElfRelocation.R_PPC_REL24, gx2Init, 0);
+        return new RPXFile(writer.toByteArray());
+    }
+
+    @Test
+    public void forEachIsDistinct() throws Exception {
+        List<RPLImport> imports = new ArrayList<>();
+        importer().forEachImport(imports::add);
+        assertEquals(Arrays.asList(new RPLImport("OSReport", "coreinit"), new RPLImport("GX2Init", "gx2")), imports);
+    }
+
+    @Test
+    public void resolve() throws Exception {
+        Map<String, List<RPLImport>> imports = importer().getImports();
+        assertEquals(Arrays.asList(new RPLImport("OSReport", "coreinit")), imports.get("coreinit"));
+        assertEquals(Arrays.asList(new RPLImport("GX2Init", "gx2")), imports.get("gx2"));
+    }
+
+    @Test
+    public void linkOncePerImport() throws Exception {
+        RPXWriter writer = new RPXWriter();
+        writer.addSection(".text", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_EXECINSTR, TEXT, new byte[0x10]);
+        writer.addExport("OSReport", TEXT, false);
+        Map<String, RPXFile> modules = new HashMap<>();
+        modules.put("game.rpx", importer());
+        modules.put("coreinit.rpl", new RPXFile(writer.toByteArray()));
+
+        RPLLinkResult result = RPLLinker.link(modules);
+        List<RPLLink> links = result.getLinks().get("game.rpx");
+        assertEquals(1, links.size());
+        assertEquals("coreinit.rpl", links.get(0).getExporter());
+        assertEquals(Arrays.asList(new RPLImport("GX2Init", "gx2")), result.getUnresolved().get("game.rpx"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void linkRejectsDuplicateModules() throws Exception {
+        RPXWriter writer = new RPXWriter();
+        writer.addSection(".text", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_EXECINSTR, TEXT, new byte[0x10]);
+        writer.addExport("OSReport", TEXT, false);
+        Map<String, RPXFile> modules = new HashMap<>();
+        modules.put("game.rpx", importer());
+        modules.put("coreinit", new RPXFile(writer.toByteArray()));
+        modules.put("CoreInit.rpl", new RPXFile(writer.toByteArray()));
+        RPLLinker.link(modules);
+    }
+}
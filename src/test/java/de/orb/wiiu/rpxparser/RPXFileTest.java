@@ -0,0 +1,64 @@
+package de.orb.wiiu.rpxparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+import org.junit.Test;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+
+public class RPXFileTest {
+
+    private static long openFiles() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        assumeTrue(os instanceof UnixOperatingSystemMXBean);
+        return ((UnixOperatingSystemMXBean) os).getOpenFileDescriptorCount();
+    }
+
+    @Test
+    public void openStream() throws Exception {
+        RPXWriter writer = new RPXWriter();
+        writer.addSection(".text", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_EXECINSTR, 0x02000000L, new byte[16]);
+        try (RPXFile file = RPXFile.open(new ByteArrayInputStream(writer.toByteArray()))) {
+            assertEquals(16, file.getTextSection().get().size());
+        }
+    }
+
+    @Test
+    public void invalidStreamClosesSpooledFile() throws Exception {
+        long before = openFiles();
+        for (int i = 0; i < 16; i++) {
+            try {
+                RPXFile.open(new ByteArrayInputStream(new byte[64]));
+                fail("invalid file accepted");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+        assertEquals(before, openFiles());
+    }
+
+    @Test
+    public void functionSymbolsTextStreamIsLazy() throws Exception {
+        RPXWriter writer = new RPXWriter();
+        int text = writer.addSection(".text", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_EXECINSTR, 0x02000000L, new byte[0x100]);
+        int data = writer.addSection(".data", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_WRITE, 0x10000000L, new byte[0x10]);
+        writer.addSymbol("variable", 0x10000000L, 4, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_OBJECT, data);
+        for (int i = 0; i < 64; i++) {
+            writer.addSymbol("function_" + i, 0x02000000L + i * 4, 4, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        }
+        RPXFile file = new RPXFile(writer.toByteArray());
+        ElfParseMetrics metrics = new ElfParseMetrics();
+        file.setParseListener(metrics);
+
+        assertEquals("function_0", file.getFunctionSymbolsTextStream().findFirst().get().name().get());
+        assertEquals(1, metrics.symbols());
+        assertEquals(64, file.getFunctionSymbolsText().size());
+    }
+}
@@ -0,0 +1,118 @@
+package de.orb.wiiu.rpxparser;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RPXIndexCacheTest {
+    private static final long TEXT = 0x02000000L;
+    private static final long HOUR = 3600 * 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] rpx(String export) throws Exception {
+        RPXWriter writer = new RPXWriter();
+        int text = writer.addSection(".text", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_EXECINSTR, TEXT, new byte[0x10]);
+        writer.addSection(".tbss", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_WRITE, 0x10000000L, new byte[0x10]);
+        writer.addSymbol(export, TEXT, 0x10, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        writer.addExport(export, TEXT, false);
+        writer.addExport("tlsVariable", 0x10000000L, true, true);
+        return writer.toByteArray();
+    }
+
+    private Path write(Path file, byte[] data, long lastModified) throws Exception {
+        Files.write(file, data);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified));
+        return file;
+    }
+
+    private static String functionExport(RPXIndex index) {
+        return index.getExports().stream().filter(e -> !e.isData()).findFirst().get().name();
+    }
+
+    @Test
+    public void index() throws Exception {
+        RPXIndexCache cache = new RPXIndexCache(folder.newFolder("cache").toPath());
+        Path file = write(folder.getRoot().toPath().resolve("a.rpx"), rpx("main"), System.currentTimeMillis() - HOUR);
+        RPXIndex index = cache.get(file);
+        assertEquals(Files.size(file), index.fileSize());
+        assertEquals("main", index.symbolName(1));
+        assertArrayEquals(new int[] { 1 }, index.functionSymbolsText());
+
+        List<ElfExport> exports = cache.get(file).getExports();
+        assertEquals(2, exports.size());
+        ElfExport tls = exports.stream().filter(ElfExport::isData).findFirst().get();
+        assertEquals("tlsVariable", tls.name());
+        assertTrue(tls.isTLS());
+        assertFalse(exports.stream().filter(e -> !e.isData()).findFirst().get().isTLS());
+    }
+
+    @Test
+    public void changedModificationTime() throws Exception {
+        RPXIndexCache cache = new RPXIndexCache(folder.newFolder("cache").toPath());
+        long lastModified = System.currentTimeMillis() - HOUR;
+        Path file = write(folder.getRoot().toPath().resolve("a.rpx"), rpx("main"), lastModified);
+        cache.get(file);
+        // same content, only the modification time changed
+        Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified + 1000));
+        assertEquals(lastModified + 1000, cache.get(file).lastModified());
+        // different content of the same size
+        write(file, rpx("mian"), lastModified + 2000);
+        assertEquals("mian", functionExport(cache.get(file)));
+    }
+
+    @Test
+    public void changeWithinModificationTimeResolution() throws Exception {
+        RPXIndexCache cache = new RPXIndexCache(folder.newFolder("cache").toPath());
+        long lastModified = System.currentTimeMillis();
+        Path file = write(folder.getRoot().toPath().resolve("a.rpx"), rpx("main"), lastModified);
+        assertEquals("main", functionExport(cache.get(file)));
+        // rewritten within the same modification time
+        write(file, rpx("mian"), lastModified);
+        assertEquals("mian", functionExport(cache.get(file)));
+    }
+
+    @Test
+    public void verifyContent() throws Exception {
+        RPXIndexCache cache = new RPXIndexCache(folder.newFolder("cache").toPath());
+        long lastModified = System.currentTimeMillis() - HOUR;
+        Path file = write(folder.getRoot().toPath().resolve("a.rpx"), rpx("main"), lastModified);
+        RPXIndex first = cache.get(file);
+        // e.g. restored with the old modification time
+        write(file, rpx("mian"), lastModified);
+        assertEquals("main", functionExport(cache.get(file)));
+        cache.setVerifyContent(true);
+        assertEquals("mian", functionExport(cache.get(file)));
+        // earlier indexes stay usable after the index file was replaced
+        assertEquals("main", functionExport(first));
+    }
+
+    @Test
+    public void overflowingCountsAreRejected() throws Exception {
+        Path file = write(folder.getRoot().toPath().resolve("a.rpx"), rpx("main"), System.currentTimeMillis() - HOUR);
+        Path indexPath = folder.getRoot().toPath().resolve("a.rpxidx");
+        RPXIndex.write(RPXFile.map(file.toFile()), Files.size(file), 0, new byte[32], indexPath);
+        ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(indexPath));
+        // symbol count, 0x10000000 * 16 overflows int
+        index.putInt(4 + 4 + 8 + 8 + 8 + 32 + 4, 0x10000000);
+        try {
+            new RPXIndex(index);
+            fail("invalid index accepted");
+        } catch (ElfException e) {
+            // expected
+        }
+    }
+}
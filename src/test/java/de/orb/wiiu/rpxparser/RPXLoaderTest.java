@@ -0,0 +1,60 @@
+package de.orb.wiiu.rpxparser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.OptionalLong;
+
+import org.junit.Test;
+
+public class RPXLoaderTest {
+    private static final long TEXT = 0x02000000L;
+    private static final int BL = 0x48000001;
+    private static final int BNE = 0x40820000;
+
+    private static RPXImage load(long osReport, long near) throws Exception {
+        RPXWriter writer = new RPXWriter();
+        ByteBuffer code = ByteBuffer.allocate(0x20);
+        code.putInt(BL).putInt(BL).putInt(BNE).putInt(BNE);
+        int text = writer.addSection(".text", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_EXECINSTR, TEXT, code.array());
+        int coreinit = writer.addImportSection("coreinit", false, 0xc0000000L);
+        int import0 = writer.addImportSymbol(coreinit, "OSReport");
+        int target = writer.addSymbol("target", TEXT + 0x10, 0x10, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        writer.addRelocation(text, TEXT, ElfRelocation.R_PPC_REL24, import0, 0);
+        writer.addRelocation(text, TEXT + 4, ElfRelocation.R_PPC_REL24, target, 0);
+        writer.addRelocation(text, TEXT + 8, ElfRelocation.R_PPC_REL14, target, (int) near);
+        writer.addRelocation(text, TEXT + 12, ElfRelocation.R_PPC_REL14, target, 0x10000);
+        return new RPXLoader(new ElfReader(ByteBuffer.wrap(writer.toByteArray()))) //
+                .setPreserveAddresses(true) //
+                .setImportResolver((rpl, name) -> OptionalLong.of(osReport)) //
+                .load();
+    }
+
+    @Test
+    public void branchesInRange() throws Exception {
+        RPXImage image = load(TEXT + 0x01fffffcL, -0x10);
+        assertEquals(3, image.appliedRelocations());
+        assertEquals(1, image.overflowedRelocations());
+        assertEquals(BL | 0x01fffffc, image.getInt(TEXT));
+        assertEquals(BL | 0x0c, image.getInt(TEXT + 4));
+        // bne TEXT + 8 -> TEXT
+        assertEquals(BNE | 0xfff8, image.getInt(TEXT + 8));
+        // more than 32 KB away, left untouched
+        assertEquals(BNE, image.getInt(TEXT + 12));
+    }
+
+    @Test
+    public void branchOutOfRange() throws Exception {
+        RPXImage image = load(TEXT + 0x02000000L, 0);
+        assertEquals(2, image.overflowedRelocations());
+        assertEquals(BL, image.getInt(TEXT));
+        assertEquals(0, image.unresolvedImports());
+    }
+
+    @Test
+    public void branchWrapsAround() throws Exception {
+        // TEXT - 0x02000000 wraps to 0 and is still in reach of a bl
+        RPXImage image = load(0, 0);
+        assertEquals(BL | 0x02000000, image.getInt(TEXT));
+    }
+}
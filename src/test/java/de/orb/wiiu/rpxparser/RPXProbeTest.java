@@ -0,0 +1,80 @@
+package de.orb.wiiu.rpxparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Test;
+
+public class RPXProbeTest {
+
+    private static ByteBuffer file() throws Exception {
+        RPXWriter writer = new RPXWriter();
+        writer.addSection(".text", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_EXECINSTR, 0x02000000L, new byte[16]);
+        return ByteBuffer.wrap(writer.toByteArray());
+    }
+
+    private static int header(ByteBuffer file, int index) {
+        return file.getInt(32) + index * (file.getShort(46) & 0xffff);
+    }
+
+    private static int nameTable(ByteBuffer file) {
+        return header(file, file.getShort(50) & 0xffff);
+    }
+
+    private static RPXSummary probe(ByteBuffer file) throws Exception {
+        Path path = Files.createTempFile("probe", ".rpx");
+        try {
+            Files.write(path, file.array());
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                return RPXProbe.probe(channel);
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private static void assertRejected(ByteBuffer file) throws Exception {
+        try {
+            probe(file);
+            fail("invalid file accepted");
+        } catch (ElfException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void sectionNames() throws Exception {
+        assertEquals(".text", probe(file()).section(".text").get().getName());
+    }
+
+    @Test
+    public void shortCompressedNameTable() throws Exception {
+        ByteBuffer file = file();
+        int pos = nameTable(file);
+        file.putInt(pos + 8, file.getInt(pos + 8) | ElfSection.RPX_SHDR_ZLIB_FLAG);
+        file.putInt(pos + 20, 2);
+        assertRejected(file);
+    }
+
+    @Test
+    public void oversizedCompressedNameTable() throws Exception {
+        ByteBuffer file = file();
+        int pos = nameTable(file);
+        file.putInt(pos + 8, file.getInt(pos + 8) | ElfSection.RPX_SHDR_ZLIB_FLAG);
+        file.putInt(file.getInt(pos + 16), Integer.MAX_VALUE);
+        assertRejected(file);
+    }
+
+    @Test
+    public void invalidSectionName() throws Exception {
+        ByteBuffer file = file();
+        file.putInt(header(file, 1), 0x7fffffff);
+        assertRejected(file);
+    }
+}
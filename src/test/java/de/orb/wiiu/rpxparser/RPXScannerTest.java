@@ -0,0 +1,94 @@
+package de.orb.wiiu.rpxparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RPXScannerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] rpx() throws IOException {
+        RPXWriter writer = new RPXWriter();
+        int text = writer.addSection(".text", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_EXECINSTR, 0x02000000L, new byte[0x10]);
+        writer.addSymbol("main", 0x02000000L, 0x10, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        return writer.toByteArray();
+    }
+
+    private static class Collector implements RPXScanner.Listener {
+        final List<Path> files = Collections.synchronizedList(new ArrayList<>());
+        final Map<Path, ElfException> errors = new ConcurrentHashMap<>();
+
+        @Override
+        public void onFile(RPXScanResult result) {
+            files.add(result.getPath());
+        }
+
+        @Override
+        public void onError(Path path, ElfException e) {
+            errors.put(path, e);
+        }
+    }
+
+    @Test
+    public void brokenFilesAreReported() throws Exception {
+        Path root = folder.getRoot().toPath();
+        Files.write(root.resolve("good.rpx"), rpx());
+        Files.write(root.resolve("broken.rpl"), new byte[] { 0x7f, 'E', 'L', 'F' });
+        Files.write(root.resolve("ignored.txt"), new byte[0]);
+        Collector collector = new Collector();
+        new RPXScanner().scan(root, collector);
+        assertEquals(Collections.singletonList(root.resolve("good.rpx")), collector.files);
+        assertEquals(Collections.singleton(root.resolve("broken.rpl")), collector.errors.keySet());
+    }
+
+    @Test
+    public void unreadableDirectoriesAreReported() throws Exception {
+        Path root = folder.getRoot().toPath();
+        Path first = Files.createDirectory(root.resolve("first"));
+        Path second = Files.createDirectory(root.resolve("second"));
+        Files.write(first.resolve("a.rpx"), rpx());
+        Files.write(second.resolve("b.rpx"), rpx());
+        // the first visited file removes the other directory after the root was listed
+        AtomicBoolean removed = new AtomicBoolean();
+        Path[] gone = new Path[1];
+        RPXScanner scanner = new RPXScanner().setParallelism(1).setFilter(path -> {
+            if (removed.compareAndSet(false, true)) {
+                Path other = path.getParent().equals(first) ? second : first;
+                try {
+                    Files.delete(other.resolve(other == first ? "a.rpx" : "b.rpx"));
+                    Files.delete(other);
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+                gone[0] = other;
+            }
+            return RPXScanner.isRPX(path);
+        });
+        Collector collector = new Collector();
+        scanner.scan(root, collector);
+        assertEquals(1, collector.files.size());
+        assertEquals(Collections.singleton(gone[0]), collector.errors.keySet());
+        assertTrue(collector.errors.get(gone[0]).getCause() instanceof NoSuchFileException);
+    }
+
+    @Test(expected = NoSuchFileException.class)
+    public void missingRootFails() throws Exception {
+        new RPXScanner().scan(folder.getRoot().toPath().resolve("missing"), new Collector());
+    }
+}
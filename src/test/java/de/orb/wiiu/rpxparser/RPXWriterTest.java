@@ -0,0 +1,101 @@
+package de.orb.wiiu.rpxparser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class RPXWriterTest {
+
+    private static final long TEXT = 0x02000000L;
+    private static final long DATA = 0x10000000L;
+
+    private static ElfReader write(boolean compressed) throws Exception {
+        RPXWriter writer = new RPXWriter().setCompressed(compressed);
+        int text = writer.addSection(".text", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_EXECINSTR, TEXT, new byte[0x20]);
+        int data = writer.addSection(".data", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_WRITE, DATA, new byte[0x10]);
+        int coreinit = writer.addImportSection("coreinit", false, 0xc0000000L);
+        int gx2 = writer.addImportSection("gx2", false, 0xc0001000L);
+        writer.addSymbol("local", TEXT + 0x10, 0x10, ElfSymbol.STB_LOCAL, ElfSymbol.STT_FUNC, text);
+        writer.addSymbol("main", TEXT, 0x10, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        writer.addSymbol("counter", DATA, 4, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_OBJECT, data);
+        int osReport = writer.addImportSymbol(coreinit, "OSReport");
+        int gx2Init = writer.addImportSymbol(gx2, "GX2Init");
+        writer.addRelocation(text, TEXT + 4, ElfRelocation.R_PPC_REL24, osReport, 0);
+        writer.addRelocation(text, TEXT + 8, ElfRelocation.R_PPC_ADDR16_HA, 2, 0x10);
+        writer.addRelocation(text, TEXT + 12, ElfRelocation.R_PPC_REL24, gx2Init, 0);
+        writer.addExport("main", TEXT, false);
+        writer.addExport("counter", DATA, true);
+        return new ElfReader(ByteBuffer.wrap(writer.toByteArray()));
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        roundTrip(false);
+    }
+
+    @Test
+    public void roundTripCompressed() throws Exception {
+        roundTrip(true);
+    }
+
+    private static void roundTrip(boolean compressed) throws Exception {
+        ElfReader reader = write(compressed);
+        RPXFile file = new RPXFile(reader);
+
+        ElfSymbolTable symtab = file.getSymbolTable().get();
+        // the null symbol and "local"
+        assertEquals(2, symtab.info());
+        List<String> names = file.getSymbols().map(s -> s.name().orElse("")).collect(Collectors.toList());
+        assertEquals(Arrays.asList("", "local", "main", "counter", "OSReport", "GX2Init"), names);
+        ElfSymbol main = symtab.symbol(2);
+        assertEquals(TEXT, main.value());
+        assertEquals(0x10, main.size());
+        assertEquals(ElfSymbol.STB_GLOBAL, main.bind());
+        assertEquals(ElfSymbol.STT_FUNC, main.type());
+        assertEquals(".text", main.section().get().name());
+        assertEquals(ElfSymbol.STB_LOCAL, symtab.symbol(1).bind());
+        assertEquals(ElfSymbol.STT_OBJECT, symtab.symbol(3).type());
+
+        assertEquals(Collections.singletonList(new RPLImport("OSReport", "coreinit")), file.getImports().get("coreinit"));
+        assertEquals(Collections.singletonList(new RPLImport("GX2Init", "gx2")), file.getImports().get("gx2"));
+
+        List<ElfExport> exports = file.getExports();
+        assertEquals(2, exports.size());
+        ElfExport function = exports.stream().filter(e -> !e.isData()).findFirst().get();
+        assertEquals("main", function.name());
+        assertEquals(TEXT, function.offset());
+        ElfExport variable = exports.stream().filter(ElfExport::isData).findFirst().get();
+        assertEquals("counter", variable.name());
+        assertEquals(DATA, variable.offset());
+
+        List<ElfSection> tables = reader.sections(ElfSection.SHT_RELA);
+        assertEquals(1, tables.size());
+        ElfRelocationTable rela = (ElfRelocationTable) tables.get(0);
+        assertEquals(".text", reader.section(rela.info()).get().name());
+        ElfRelocation call = rela.relocation(0);
+        assertEquals(TEXT + 4, call.offset());
+        assertEquals(ElfRelocation.R_PPC_REL24, call.type());
+        assertEquals("OSReport", call.symbol().get().name().get());
+        assertEquals(0, call.addend());
+        ElfRelocation ha = rela.relocation(1);
+        assertEquals(TEXT + 8, ha.offset());
+        assertEquals(ElfRelocation.R_PPC_ADDR16_HA, ha.type());
+        assertEquals("main", ha.symbol().get().name().get());
+        assertEquals(0x10, ha.addend());
+        assertEquals(3, rela.stream().count());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void localAfterGlobalIsRejected() {
+        RPXWriter writer = new RPXWriter();
+        int text = writer.addSection(".text", ElfSection.SHT_PROGBITS, RPXWriter.SHF_ALLOC | RPXWriter.SHF_EXECINSTR, TEXT, new byte[0x10]);
+        writer.addSymbol("global", TEXT, 8, ElfSymbol.STB_GLOBAL, ElfSymbol.STT_FUNC, text);
+        writer.addSymbol("local", TEXT + 8, 8, ElfSymbol.STB_LOCAL, ElfSymbol.STT_FUNC, text);
+    }
+}